@@ -0,0 +1,33 @@
+package com.google.devrel.training.conference.benchmark;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Sets up a local App Engine environment on each benchmark thread.
+ *
+ * Datastore keys read the application id from the thread's environment, so benchmarks that
+ * create keys or Objectify queries take this state as a parameter.
+ */
+@State(Scope.Thread)
+public class AppEngineEnvironment {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        helper.setUp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        helper.tearDown();
+    }
+}
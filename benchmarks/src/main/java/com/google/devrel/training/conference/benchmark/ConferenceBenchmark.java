@@ -0,0 +1,92 @@
+package com.google.devrel.training.conference.benchmark;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.form.ConferenceForm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for building and reading Conferences.
+ *
+ * Run with -prof gc to get the allocation rate along with the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConferenceBenchmark {
+
+    private static final String ORGANIZER_USER_ID = "123456789";
+
+    private static final List<String> TOPICS = Arrays.asList("Google", "Cloud", "Platform");
+
+    private ConferenceForm conferenceForm;
+
+    private ConferenceForm conferenceFormWithoutDates;
+
+    private Conference conference;
+
+    @Setup
+    public void setUp(AppEngineEnvironment environment) {
+        Date startDate = new Date(1441065600000L);
+        Date endDate = new Date(1441238400000L);
+        conferenceForm = new ConferenceForm("GCP Live", "New announcements for Google Cloud "
+                + "Platform", TOPICS, "San Francisco", startDate, endDate, 100);
+        conferenceFormWithoutDates = new ConferenceForm("GCP Live", null, TOPICS,
+                "San Francisco", null, null, 100);
+        conference = new Conference(123456L, ORGANIZER_USER_ID, conferenceForm);
+    }
+
+    @Benchmark
+    public Conference construct() {
+        return new Conference(123456L, ORGANIZER_USER_ID, conferenceForm);
+    }
+
+    /**
+     * Construction without the Calendar month derivation, to tell its cost apart.
+     */
+    @Benchmark
+    public Conference constructWithoutDates() {
+        return new Conference(123456L, ORGANIZER_USER_ID, conferenceFormWithoutDates);
+    }
+
+    @Benchmark
+    public Conference updateWithConferenceForm() {
+        conference.updateWithConferenceForm(conferenceForm);
+        return conference;
+    }
+
+    @Benchmark
+    public String getWebsafeKey() {
+        return conference.getWebsafeKey();
+    }
+
+    @Benchmark
+    public String toStringBenchmark() {
+        return conference.toString();
+    }
+
+    @Benchmark
+    public void defensiveCopyGetters(Blackhole blackhole) {
+        blackhole.consume(conference.getTopics());
+        blackhole.consume(conference.getStartDate());
+        blackhole.consume(conference.getEndDate());
+    }
+}
@@ -0,0 +1,66 @@
+package com.google.devrel.training.conference.benchmark;
+
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Filter;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Operator;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.QueryPlan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks for planning Conference queries.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConferenceQueryFormBenchmark {
+
+    private ConferenceQueryForm equalityForm;
+
+    private ConferenceQueryForm inequalityForm;
+
+    @Setup
+    public void setUp(AppEngineEnvironment environment) {
+        // The planner logs every plan, which would dominate the measurement.
+        Logger.getLogger(ConferenceQueryForm.class.getName()).setLevel(Level.WARNING);
+        equalityForm = new ConferenceQueryForm()
+                .filter(new Filter(Field.CITY, Operator.EQ, "London"))
+                .filter(new Filter(Field.TOPIC, Operator.EQ, "Medical Innovations"));
+        inequalityForm = new ConferenceQueryForm()
+                .filter(new Filter(Field.CITY, Operator.EQ, "London"))
+                .filter(new Filter(Field.MONTH, Operator.GT, "6"))
+                .filter(new Filter(Field.MAX_ATTENDEES, Operator.LT, "50"));
+    }
+
+    @Benchmark
+    public QueryPlan planEqualityQuery() {
+        return equalityForm.getQueryPlan();
+    }
+
+    @Benchmark
+    public QueryPlan planInequalityQuery() {
+        return inequalityForm.getQueryPlan();
+    }
+
+    @Benchmark
+    public String canonicalForm() {
+        return inequalityForm.getCanonicalForm();
+    }
+}
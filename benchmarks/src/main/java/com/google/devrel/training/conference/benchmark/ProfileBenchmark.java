@@ -0,0 +1,77 @@
+package com.google.devrel.training.conference.benchmark;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.googlecode.objectify.Key;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for checking whether a Profile attends a Conference.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProfileBenchmark {
+
+    /**
+     * Number of Conferences the Profile attends.
+     */
+    @Param({"1", "10", "100", "1000"})
+    public int conferencesToAttend;
+
+    private Profile profile;
+
+    private Key<Conference> attendedKey;
+
+    private Key<Conference> notAttendedKey;
+
+    private String attendedWebsafeKey;
+
+    @Setup
+    public void setUp(AppEngineEnvironment environment) {
+        profile = new Profile("123456789", "Luke", "luke@example.com",
+                TeeShirtSize.NOT_SPECIFIED);
+        Key<Profile> organizerKey = Key.create(Profile.class, "987654321");
+        for (int i = 1; i <= conferencesToAttend; i++) {
+            profile.addToConferencesToAttend(Key.create(organizerKey, Conference.class, i));
+        }
+        attendedKey = Key.create(organizerKey, Conference.class, conferencesToAttend);
+        notAttendedKey = Key.create(organizerKey, Conference.class, conferencesToAttend + 1);
+        attendedWebsafeKey = attendedKey.getString();
+    }
+
+    @Benchmark
+    public boolean isRegisteredForAttended() {
+        return profile.isRegisteredFor(attendedKey);
+    }
+
+    @Benchmark
+    public boolean isRegisteredForNotAttended() {
+        return profile.isRegisteredFor(notAttendedKey);
+    }
+
+    /**
+     * The websafe keys the API returns to clients.
+     */
+    @Benchmark
+    public boolean containsWebsafeKey() {
+        return profile.getConferenceKeysToAttend().contains(attendedWebsafeKey);
+    }
+}
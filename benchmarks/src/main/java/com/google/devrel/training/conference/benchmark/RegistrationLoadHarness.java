@@ -0,0 +1,438 @@
+package com.google.devrel.training.conference.benchmark;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.api.server.spi.response.ConflictException;
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.apphosting.api.ApiProxy;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.google.devrel.training.conference.service.SeatCounter;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.ObjectifyService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Load harness for registerForConference and unregisterFromConference on the local datastore.
+ *
+ * Simulated users register for randomly chosen Conferences from a pool of threads, and give
+ * some of their registrations back. The harness runs once against a single Conference and once
+ * against many, reports throughput, latency percentiles, commits and transaction retries, and
+ * then checks that no Conference was oversold and that the seats agree with the Profiles.
+ *
+ * Usage: java -cp target/benchmarks.jar
+ *     com.google.devrel.training.conference.benchmark.RegistrationLoadHarness
+ *     [--users=200] [--threads=16] [--operations=5] [--conferences=50] [--seats=100]
+ *     [--unregister=0.3] [--seed=42]
+ */
+public class RegistrationLoadHarness {
+
+    private static final String ORGANIZER_USER_ID = "organizer";
+
+    /**
+     * Objectify logs a warning each time a transaction fails with a concurrency conflict and is
+     * retried.
+     */
+    private static final String TRANSACTOR_LOGGER = "com.googlecode.objectify.impl.TransactorNo";
+
+    private static final String CONCURRENCY_FAILURE = "Optimistic concurrency failure";
+
+    private final int users;
+    private final int threads;
+    private final int operations;
+    private final int seats;
+    private final double unregisterRatio;
+    private final long seed;
+
+    private final ConferenceApi conferenceApi = new ConferenceApi();
+
+    private final AtomicLong registrations = new AtomicLong();
+    private final AtomicLong unregistrations = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicReference<Exception> firstError = new AtomicReference<>();
+
+    private long elapsedNanos;
+
+    public RegistrationLoadHarness(int users, int threads, int operations, int seats,
+                                   double unregisterRatio, long seed) {
+        this.users = users;
+        this.threads = threads;
+        this.operations = operations;
+        this.seats = seats;
+        this.unregisterRatio = unregisterRatio;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        RegistrationLoadHarness harness = new RegistrationLoadHarness(
+                intOption(options, "users", 200),
+                intOption(options, "threads", 16),
+                intOption(options, "operations", 5),
+                intOption(options, "seats", 100),
+                Double.parseDouble(option(options, "unregister", "0.3")),
+                Long.parseLong(option(options, "seed", "42")));
+        // The retries are counted, not printed.
+        Logger.getLogger(TRANSACTOR_LOGGER).setUseParentHandlers(false);
+        Logger.getLogger("com.google.devrel.training.conference").setLevel(Level.SEVERE);
+
+        boolean passed = harness.run("one conference", 1);
+        passed &= harness.run("many conferences", intOption(options, "conferences", 50));
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs the workload against the given number of Conferences in a fresh local datastore.
+     *
+     * @return true when the datastore is consistent afterwards.
+     */
+    public boolean run(String scenario, int conferenceCount) throws Exception {
+        LocalServiceTestHelper helper = new LocalServiceTestHelper(
+                new LocalDatastoreServiceTestConfig().setApplyAllHighRepJobPolicy(),
+                new LocalMemcacheServiceTestConfig(),
+                new LocalTaskQueueTestConfig().setDisableAutoTaskExecution(true));
+        helper.setUp();
+        @SuppressWarnings("unchecked")
+        ApiProxy.Delegate<ApiProxy.Environment> delegate = ApiProxy.getDelegate();
+        ApiProxy.setDelegate(new CommitCountingDelegate(delegate));
+        Handler retryCounter = new RetryCountingHandler();
+        Logger.getLogger(TRANSACTOR_LOGGER).addHandler(retryCounter);
+        try {
+            resetCounters();
+            List<String> conferenceKeys = createConferences(conferenceCount);
+            List<User> simulatedUsers = createUsers();
+            List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+            Map<String, Set<String>> expected = runWorkload(simulatedUsers, conferenceKeys,
+                    latencies);
+            report(scenario, conferenceCount, latencies);
+            return verify(conferenceKeys, expected);
+        } finally {
+            Logger.getLogger(TRANSACTOR_LOGGER).removeHandler(retryCounter);
+            ApiProxy.setDelegate(delegate);
+            ObjectifyService.reset();
+            helper.tearDown();
+        }
+    }
+
+    private void resetCounters() {
+        for (AtomicLong counter : Arrays.asList(registrations, unregistrations, rejections,
+                errors, commits, retries)) {
+            counter.set(0);
+        }
+        firstError.set(null);
+    }
+
+    private void recordError(Exception e) {
+        errors.incrementAndGet();
+        firstError.compareAndSet(null, e);
+    }
+
+    private List<String> createConferences(int conferenceCount) {
+        List<Conference> conferences = new ArrayList<>(conferenceCount);
+        List<String> conferenceKeys = new ArrayList<>(conferenceCount);
+        for (int i = 0; i < conferenceCount; i++) {
+            Conference conference = new Conference(i + 1, ORGANIZER_USER_ID, new ConferenceForm(
+                    "Conference " + i, null, null, null, null, null, seats));
+            conferences.add(conference);
+            conferenceKeys.add(conference.getWebsafeKey());
+        }
+        ofy().save().entities(conferences).now();
+        ObjectifyService.reset();
+        return conferenceKeys;
+    }
+
+    private List<User> createUsers() {
+        List<User> simulatedUsers = new ArrayList<>(users);
+        List<Profile> profiles = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            String userId = "user" + i;
+            String email = userId + "@example.com";
+            simulatedUsers.add(new User(email, "gmail.com", userId));
+            profiles.add(new Profile(userId, userId, email, TeeShirtSize.NOT_SPECIFIED));
+        }
+        ofy().save().entities(profiles).now();
+        ObjectifyService.reset();
+        return simulatedUsers;
+    }
+
+    /**
+     * Runs the simulated users on the thread pool.
+     *
+     * @return the Conferences each user should be registered for afterwards, by userId.
+     */
+    private Map<String, Set<String>> runWorkload(List<User> simulatedUsers,
+            final List<String> conferenceKeys, final List<Long> latencies) throws Exception {
+        final ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Set<String>>> futures = new ArrayList<>(simulatedUsers.size());
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < simulatedUsers.size(); i++) {
+                final User user = simulatedUsers.get(i);
+                final Random random = new Random(seed + i);
+                futures.add(executor.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() {
+                        // The datastore stubs are reached through the App Engine environment
+                        // of the calling thread.
+                        ApiProxy.setEnvironmentForCurrentThread(environment);
+                        try {
+                            return simulateUser(user, conferenceKeys, random, latencies);
+                        } finally {
+                            ApiProxy.clearEnvironmentForCurrentThread();
+                        }
+                    }
+                }));
+            }
+            Map<String, Set<String>> expected = new HashMap<>();
+            for (int i = 0; i < futures.size(); i++) {
+                expected.put(simulatedUsers.get(i).getUserId(), futures.get(i).get());
+            }
+            elapsedNanos = System.nanoTime() - start;
+            return expected;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers the user for random Conferences, giving some of them back.
+     *
+     * @return the Conferences the user is registered for at the end.
+     */
+    private Set<String> simulateUser(User user, List<String> conferenceKeys, Random random,
+                                     List<Long> latencies) {
+        Set<String> registered = new HashSet<>();
+        for (int i = 0; i < operations; i++) {
+            String websafeConferenceKey = conferenceKeys.get(random.nextInt(conferenceKeys.size()));
+            long start = System.nanoTime();
+            try {
+                conferenceApi.registerForConference(user, websafeConferenceKey);
+                registered.add(websafeConferenceKey);
+                registrations.incrementAndGet();
+            } catch (ConflictException e) {
+                // Already registered or sold out.
+                rejections.incrementAndGet();
+            } catch (Exception e) {
+                recordError(e);
+            } finally {
+                latencies.add(System.nanoTime() - start);
+                // Like ObjectifyFilter at the end of a request.
+                ObjectifyService.reset();
+            }
+            if (!registered.isEmpty() && random.nextDouble() < unregisterRatio) {
+                List<String> candidates = new ArrayList<>(registered);
+                String toGiveBack = candidates.get(random.nextInt(candidates.size()));
+                start = System.nanoTime();
+                try {
+                    conferenceApi.unregisterFromConference(user, toGiveBack);
+                    registered.remove(toGiveBack);
+                    unregistrations.incrementAndGet();
+                } catch (Exception e) {
+                    recordError(e);
+                } finally {
+                    latencies.add(System.nanoTime() - start);
+                    ObjectifyService.reset();
+                }
+            }
+        }
+        return registered;
+    }
+
+    private void report(String scenario, int conferenceCount, List<Long> latencies) {
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        System.out.println(String.format("== %s: %d conferences x %d seats, %d users, "
+                + "%d threads", scenario, conferenceCount, seats, users, threads));
+        System.out.println(String.format("calls: %d in %.2f s, %.1f calls/s", sorted.length,
+                seconds, sorted.length / seconds));
+        System.out.println(String.format("registered: %d, unregistered: %d, rejected: %d, "
+                + "errors: %d", registrations.get(), unregistrations.get(), rejections.get(),
+                errors.get()));
+        System.out.println(String.format("latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f",
+                percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                percentile(sorted, 1.0)));
+        System.out.println(String.format("commits: %d, contention retries: %d", commits.get(),
+                retries.get()));
+        if (firstError.get() != null) {
+            System.out.println("first error: " + firstError.get());
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Checks that no Conference was oversold and that the seats and Profiles agree.
+     */
+    private boolean verify(List<String> conferenceKeys, Map<String, Set<String>> expected) {
+        ObjectifyService.reset();
+        boolean consistent = true;
+        Map<String, Integer> attendees = new HashMap<>();
+        Collection<Profile> profiles = ofy().load().type(Profile.class).list();
+        for (Profile profile : profiles) {
+            List<String> attending = profile.getConferenceKeysToAttend();
+            Set<String> expectedKeys = expected.get(profile.getUserId());
+            if (expectedKeys == null) {
+                continue;
+            }
+            if (attending.size() != new HashSet<>(attending).size()
+                    || !expectedKeys.equals(new HashSet<>(attending))) {
+                System.out.println("MISMATCH: " + profile.getUserId() + " attends " + attending
+                        + ", expected " + expectedKeys);
+                consistent = false;
+            }
+            for (String websafeConferenceKey : attending) {
+                Integer count = attendees.get(websafeConferenceKey);
+                attendees.put(websafeConferenceKey, count == null ? 1 : count + 1);
+            }
+        }
+        for (String websafeConferenceKey : conferenceKeys) {
+            Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+            Integer attending = attendees.get(websafeConferenceKey);
+            int booked = attending == null ? 0 : attending;
+            Integer seatsAvailable = SeatCounter.sumShards(conferenceKey);
+            if (seatsAvailable == null) {
+                // Never registered for.
+                seatsAvailable = ofy().load().key(conferenceKey).now().getSeatsAvailable();
+            }
+            if (booked > seats || seatsAvailable < 0 || seatsAvailable + booked != seats) {
+                System.out.println(String.format("OVERSOLD OR LOST SEATS: %s has %d attendees "
+                        + "and %d seats available out of %d", websafeConferenceKey, booked,
+                        seatsAvailable, seats));
+                consistent = false;
+            }
+        }
+        System.out.println(consistent ? "consistent: yes" : "consistent: NO");
+        return consistent;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        return Integer.parseInt(option(options, name, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Counts the datastore commits, including the ones that fail and are retried.
+     */
+    private class CommitCountingDelegate implements ApiProxy.Delegate<ApiProxy.Environment> {
+
+        private final ApiProxy.Delegate<ApiProxy.Environment> delegate;
+
+        CommitCountingDelegate(ApiProxy.Delegate<ApiProxy.Environment> delegate) {
+            this.delegate = delegate;
+        }
+
+        private void count(String packageName, String methodName) {
+            if ("datastore_v3".equals(packageName) && "Commit".equals(methodName)) {
+                commits.incrementAndGet();
+            }
+        }
+
+        @Override
+        public byte[] makeSyncCall(ApiProxy.Environment environment, String packageName,
+                                   String methodName, byte[] request) {
+            count(packageName, methodName);
+            return delegate.makeSyncCall(environment, packageName, methodName, request);
+        }
+
+        @Override
+        public Future<byte[]> makeAsyncCall(ApiProxy.Environment environment, String packageName,
+                String methodName, byte[] request, ApiProxy.ApiConfig apiConfig) {
+            count(packageName, methodName);
+            return delegate.makeAsyncCall(environment, packageName, methodName, request,
+                    apiConfig);
+        }
+
+        @Override
+        public void log(ApiProxy.Environment environment, ApiProxy.LogRecord record) {
+            delegate.log(environment, record);
+        }
+
+        @Override
+        public void flushLogs(ApiProxy.Environment environment) {
+            delegate.flushLogs(environment);
+        }
+
+        @Override
+        public List<Thread> getRequestThreads(ApiProxy.Environment environment) {
+            return delegate.getRequestThreads(environment);
+        }
+    }
+
+    /**
+     * Counts the transactions Objectify retries after a concurrency conflict.
+     */
+    private class RetryCountingHandler extends Handler {
+
+        @Override
+        public void publish(LogRecord record) {
+            if (record.getMessage() != null
+                    && record.getMessage().startsWith(CONCURRENCY_FAILURE)) {
+                retries.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+}
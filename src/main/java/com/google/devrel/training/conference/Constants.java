@@ -14,4 +14,8 @@ public class Constants {
     public static final String API_EXPLORER_CLIENT_ID = Constant.API_EXPLORER_CLIENT_ID;
 
     public static final String MEMCACHE_ANNOUNCEMENTS_KEY = "RECENT_ANNOUNCEMENTS";
-}
\ No newline at end of file
+    public static final String MEMCACHE_ANNOUNCEMENTS_VERSION_KEY = "RECENT_ANNOUNCEMENTS_VERSION";
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+}
@@ -12,6 +12,7 @@ import com.googlecode.objectify.Key;
 import com.googlecode.objectify.annotation.Cache;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Ignore;
 import com.googlecode.objectify.annotation.Index;
 import com.googlecode.objectify.annotation.Parent;
 
@@ -75,12 +76,16 @@ public class Conference {
 
     /**
      * The starting date of this conference.
+     *
+     * Indexed for the projection queries behind conference summaries.
      */
+    @Index
     private Date startDate;
 
     /**
      * The ending date of this conference.
      */
+    @Index
     private Date endDate;
 
     /**
@@ -103,6 +108,22 @@ public class Conference {
     @Index
     private int seatsAvailable;
 
+    /**
+     * Organizer's display name, stored so that serializing a Conference doesn't load the
+     * organizer's Profile.
+     *
+     * Set when the Conference is created, and rewritten by OrganizerRenamer when the organizer
+     * changes it. Conferences saved before it was stored get it from OrganizerNameResolver.
+     */
+    private String organizerDisplayName;
+
+    /**
+     * The websafe key, built on first use. The key never changes once the Conference has been
+     * created or loaded. Not stored.
+     */
+    @Ignore
+    private String websafeKey;
+
     /**
      * Just making the default constructor private.
      */
@@ -134,9 +155,17 @@ public class Conference {
         return profileKey;
     }
 
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public Key<Conference> getKey() {
+        return Key.create(profileKey, Conference.class, id);
+    }
+
     // Get a String version of the key
     public String getWebsafeKey() {
-        return Key.create(profileKey, Conference.class, id).getString();
+        if (websafeKey == null) {
+            websafeKey = getKey().getString();
+        }
+        return websafeKey;
     }
 
     @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
@@ -150,7 +179,9 @@ public class Conference {
      * @return organizer's display name. If there is no Profile, return his/her userId.
      */
     public String getOrganizerDisplayName() {
-        // Profile organizer = ofy().load().key(Key.create(Profile.class, organizerUserId)).now();
+        if (organizerDisplayName != null) {
+            return organizerDisplayName;
+        }
         Profile organizer = ofy().load().key(getProfileKey()).now();
         if (organizer == null) {
             return organizerUserId;
@@ -159,6 +190,24 @@ public class Conference {
         }
     }
 
+    /**
+     * Tells whether the organizer's display name is known without loading the Profile.
+     *
+     * @return true when the name is stored or was resolved.
+     */
+    public boolean hasOrganizerDisplayName() {
+        return organizerDisplayName != null;
+    }
+
+    /**
+     * Sets the organizer's display name, to be stored with the Conference.
+     *
+     * @param organizerDisplayName organizer's display name.
+     */
+    public void setOrganizerDisplayName(String organizerDisplayName) {
+        this.organizerDisplayName = organizerDisplayName;
+    }
+
     /**
      * Returns a defensive copy of topics if not null.
      * @return a defensive copy of topics if not null.
@@ -249,6 +298,19 @@ public class Conference {
         seatsAvailable = seatsAvailable + number;
     }
 
+    /**
+     * Sets seatsAvailable to the sum of the seat shards, see SeatCounter.
+     *
+     * @param seatsAvailable the number of seats available across all the shards.
+     */
+    public void updateSeatsAvailable(final int seatsAvailable) {
+        if (seatsAvailable < 0 || seatsAvailable > maxAttendees) {
+            throw new IllegalArgumentException("Invalid number of seats available: "
+                    + seatsAvailable);
+        }
+        this.seatsAvailable = seatsAvailable;
+    }
+
     @Override
     public String toString() {
         StringBuilder stringBuilder = new StringBuilder("Id: " + id + "\n")
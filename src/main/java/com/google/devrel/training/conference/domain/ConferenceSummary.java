@@ -0,0 +1,72 @@
+package com.google.devrel.training.conference.domain;
+
+import java.util.Date;
+
+/**
+ * The properties of a Conference shown in conference lists.
+ *
+ * Summaries are read with projection queries, so everything here must be an indexed property
+ * of Conference. The client loads the rest with getConference.
+ */
+public class ConferenceSummary {
+
+    private final String websafeKey;
+
+    private final String name;
+
+    private final String city;
+
+    private final Date startDate;
+
+    private final Date endDate;
+
+    private final int maxAttendees;
+
+    private final int seatsAvailable;
+
+    public ConferenceSummary(Conference conference) {
+        this.websafeKey = conference.getWebsafeKey();
+        this.name = conference.getName();
+        this.city = conference.getCity();
+        this.startDate = conference.getStartDate();
+        this.endDate = conference.getEndDate();
+        this.maxAttendees = conference.getMaxAttendees();
+        this.seatsAvailable = conference.getSeatsAvailable();
+    }
+
+    public String getWebsafeKey() {
+        return websafeKey;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    /**
+     * Returns a defensive copy of startDate if not null.
+     * @return a defensive copy of startDate if not null.
+     */
+    public Date getStartDate() {
+        return startDate == null ? null : new Date(startDate.getTime());
+    }
+
+    /**
+     * Returns a defensive copy of endDate if not null.
+     * @return a defensive copy of endDate if not null.
+     */
+    public Date getEndDate() {
+        return endDate == null ? null : new Date(endDate.getTime());
+    }
+
+    public int getMaxAttendees() {
+        return maxAttendees;
+    }
+
+    public int getSeatsAvailable() {
+        return seatsAvailable;
+    }
+}
@@ -0,0 +1,52 @@
+package com.google.devrel.training.conference.domain;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * What a signed in user sees first: their Profile, the first page of the Conferences they have
+ * created and the Conferences they will attend.
+ */
+public class Dashboard {
+
+    private final Profile profile;
+
+    private final List<Conference> conferencesCreated;
+
+    private final String conferencesCreatedNextPageToken;
+
+    private final List<Conference> conferencesToAttend;
+
+    public Dashboard(Profile profile, Collection<Conference> conferencesCreated,
+                     String conferencesCreatedNextPageToken,
+                     Collection<Conference> conferencesToAttend) {
+        this.profile = profile;
+        this.conferencesCreated = ImmutableList.copyOf(conferencesCreated);
+        this.conferencesCreatedNextPageToken = conferencesCreatedNextPageToken;
+        this.conferencesToAttend = ImmutableList.copyOf(conferencesToAttend);
+    }
+
+    /**
+     * @return the user's Profile, null when the user hasn't saved one yet.
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public List<Conference> getConferencesCreated() {
+        return conferencesCreated;
+    }
+
+    /**
+     * @return the cursor for getConferencesCreated to continue from, null when there are no more.
+     */
+    public String getConferencesCreatedNextPageToken() {
+        return conferencesCreatedNextPageToken;
+    }
+
+    public List<Conference> getConferencesToAttend() {
+        return conferencesToAttend;
+    }
+}
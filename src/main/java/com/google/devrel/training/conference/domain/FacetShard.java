@@ -0,0 +1,102 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FacetShard holds a slice of the Conference counts per facet value.
+ *
+ * A facet value is a field and a value, like city:London or month:3, see FacetCounter. Each
+ * shard is a root entity, so Conferences created at the same time usually update different
+ * shards. The counts of all shards add up to the number of Conferences with the value, and the
+ * seat counts to their maxAttendees.
+ *
+ * The counts are kept in parallel lists rather than a map, because facet values may hold dots
+ * and other characters that aren't allowed in embedded property names.
+ */
+@Entity
+public class FacetShard {
+
+    @Id
+    private long id;
+
+    private List<String> facetValues = new ArrayList<>();
+
+    private List<Long> conferences = new ArrayList<>();
+
+    private List<Long> seats = new ArrayList<>();
+
+    /**
+     * Just making the default constructor private.
+     */
+    private FacetShard() {}
+
+    public FacetShard(final int index) {
+        this.id = index + 1;
+    }
+
+    /**
+     * Returns the key of the given shard.
+     *
+     * @param index the index of the shard, from 0.
+     * @return the key of the shard.
+     */
+    public static Key<FacetShard> createKey(final int index) {
+        return Key.create(FacetShard.class, index + 1);
+    }
+
+    public List<String> getFacetValues() {
+        return facetValues == null ? new ArrayList<String>() : facetValues;
+    }
+
+    public List<Long> getConferences() {
+        return conferences == null ? new ArrayList<Long>() : conferences;
+    }
+
+    public List<Long> getSeats() {
+        return seats == null ? new ArrayList<Long>() : seats;
+    }
+
+    /**
+     * Adds to the counts of a facet value. Values whose counts drop to zero are removed.
+     *
+     * @param facetValue the facet value.
+     * @param conferenceDelta the change in the number of Conferences.
+     * @param seatDelta the change in the number of seats.
+     */
+    public void add(final String facetValue, final long conferenceDelta, final long seatDelta) {
+        if (facetValues == null) {
+            facetValues = new ArrayList<>();
+            conferences = new ArrayList<>();
+            seats = new ArrayList<>();
+        }
+        int i = facetValues.indexOf(facetValue);
+        if (i < 0) {
+            if (conferenceDelta != 0 || seatDelta != 0) {
+                facetValues.add(facetValue);
+                conferences.add(conferenceDelta);
+                seats.add(seatDelta);
+            }
+        } else if (conferences.get(i) + conferenceDelta == 0 && seats.get(i) + seatDelta == 0) {
+            facetValues.remove(i);
+            conferences.remove(i);
+            seats.remove(i);
+        } else {
+            conferences.set(i, conferences.get(i) + conferenceDelta);
+            seats.set(i, seats.get(i) + seatDelta);
+        }
+    }
+
+    /**
+     * Removes all the counts.
+     */
+    public void clear() {
+        facetValues = new ArrayList<>();
+        conferences = new ArrayList<>();
+        seats = new ArrayList<>();
+    }
+}
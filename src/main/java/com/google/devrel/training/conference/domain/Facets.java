@@ -0,0 +1,75 @@
+package com.google.devrel.training.conference.domain;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The number of Conferences and seats per city, topic and start month, for the filters of the
+ * conference list. Values are sorted by the number of Conferences, most first.
+ */
+@SuppressWarnings("serial")
+public class Facets implements Serializable {
+
+    /**
+     * The counts for one value of a field.
+     */
+    public static class FacetCount implements Serializable {
+
+        private final String value;
+
+        private final long conferences;
+
+        private final long seats;
+
+        public FacetCount(String value, long conferences, long seats) {
+            this.value = value;
+            this.conferences = conferences;
+            this.seats = seats;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getConferences() {
+            return conferences;
+        }
+
+        /**
+         * @return the sum of maxAttendees of the Conferences.
+         */
+        public long getSeats() {
+            return seats;
+        }
+    }
+
+    private final List<FacetCount> cities;
+
+    private final List<FacetCount> topics;
+
+    private final List<FacetCount> months;
+
+    public Facets(List<FacetCount> cities, List<FacetCount> topics, List<FacetCount> months) {
+        this.cities = ImmutableList.copyOf(cities);
+        this.topics = ImmutableList.copyOf(topics);
+        this.months = ImmutableList.copyOf(months);
+    }
+
+    public List<FacetCount> getCities() {
+        return cities;
+    }
+
+    public List<FacetCount> getTopics() {
+        return topics;
+    }
+
+    /**
+     * @return the counts per start month, 1 for January. Conferences without a start date
+     *         aren't counted.
+     */
+    public List<FacetCount> getMonths() {
+        return months;
+    }
+}
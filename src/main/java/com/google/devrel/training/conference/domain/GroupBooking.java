@@ -0,0 +1,67 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Parent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GroupBooking holds seats booked for a group of users whose Profiles are not updated yet.
+ *
+ * It is a child of the Conference, so that the pending bookings of a Conference can be read
+ * consistently with an ancestor query. It is deleted once all the Profiles are updated.
+ */
+@Entity
+public class GroupBooking {
+
+    @Parent
+    private Key<Conference> conferenceKey;
+
+    @Id
+    private Long id;
+
+    /**
+     * The users who hold a seat but don't have the Conference in their Profile yet.
+     */
+    private List<String> pendingUserIds = new ArrayList<>(0);
+
+    /**
+     * Just making the default constructor private.
+     */
+    private GroupBooking() {}
+
+    public GroupBooking(final Key<Conference> conferenceKey, final Collection<String> userIds) {
+        this.conferenceKey = conferenceKey;
+        this.pendingUserIds = new ArrayList<>(userIds);
+    }
+
+    public Key<GroupBooking> getKey() {
+        return Key.create(conferenceKey, GroupBooking.class, id);
+    }
+
+    public Key<Conference> getConferenceKey() {
+        return conferenceKey;
+    }
+
+    public List<String> getPendingUserIds() {
+        return Collections.unmodifiableList(pendingUserIds);
+    }
+
+    /**
+     * Removes users whose Profiles have been updated.
+     *
+     * @param userIds the users done with.
+     */
+    public void applied(final Collection<String> userIds) {
+        pendingUserIds.removeAll(userIds);
+    }
+
+    public boolean isDone() {
+        return pendingUserIds.isEmpty();
+    }
+}
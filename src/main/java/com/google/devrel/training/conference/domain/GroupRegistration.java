@@ -0,0 +1,83 @@
+package com.google.devrel.training.conference.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of registering a group of users for a Conference, per user.
+ */
+public class GroupRegistration {
+
+    public static enum Status {
+        /**
+         * A seat is booked. The Conference shows up in the user's Profile shortly.
+         */
+        REGISTERED,
+        /**
+         * The user is registered already, or was booked by an earlier group registration.
+         */
+        ALREADY_REGISTERED,
+        /**
+         * The user has no Profile.
+         */
+        NO_PROFILE,
+        /**
+         * The Conference ran out of seats before the user's turn.
+         */
+        NO_SEATS_AVAILABLE
+    }
+
+    /**
+     * The outcome for one user.
+     */
+    public static class Outcome {
+
+        private final String userId;
+
+        private final Status status;
+
+        public Outcome(String userId, Status status) {
+            this.userId = userId;
+            this.status = status;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+    }
+
+    private final List<Outcome> outcomes;
+
+    private final int registered;
+
+    /**
+     * @param statuses the status by user ID, in the order of the request.
+     */
+    public GroupRegistration(Map<String, Status> statuses) {
+        this.outcomes = new ArrayList<>(statuses.size());
+        int registered = 0;
+        for (Map.Entry<String, Status> status : statuses.entrySet()) {
+            outcomes.add(new Outcome(status.getKey(), status.getValue()));
+            if (status.getValue() == Status.REGISTERED) {
+                registered++;
+            }
+        }
+        this.registered = registered;
+    }
+
+    public List<Outcome> getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * @return the number of users this request booked a seat for.
+     */
+    public int getRegistered() {
+        return registered;
+    }
+}
@@ -1,25 +1,44 @@
 package com.google.devrel.training.conference.domain;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
 
-import com.google.common.collect.ImmutableList;
+import com.google.api.server.spi.config.AnnotationBoolean;
+import com.google.api.server.spi.config.ApiResourceProperty;
 import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.AlsoLoad;
 import com.googlecode.objectify.annotation.Cache;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Ignore;
 
 
 @Entity
 @Cache
 public class Profile {
+	private static final Logger LOG = Logger.getLogger(Profile.class.getName());
+
 	String displayName;
 	String mainEmail;
 	TeeShirtSize teeShirtSize;
 	
 	@Id String userId;
 	
-	private List <String> conferenceKeysToAttend = new ArrayList<> (0);
+	/**
+	 * Keys of the Conferences the user has signed up for, in registration order.
+	 */
+	private Set<Key<Conference>> conferencesToAttend = new LinkedHashSet<>(0);
+
+	/**
+	 * Set when the Profile was loaded from the old list of websafe keys.
+	 */
+	@Ignore
+	private boolean legacyConferenceKeys;
 	
     
     /**
@@ -60,34 +79,80 @@ public class Profile {
 		this.teeShirtSize = teeShirtSize;
 	}
 	
-	/*
-     * @return a list containing conferences that the user has sign up for 
+	/**
+     * Returns the websafe keys of the Conferences the user has signed up for, for the API.
+     *
+     * @return the websafe keys, in registration order.
      */
     public List<String> getConferenceKeysToAttend(){
-        return ImmutableList.copyOf(conferenceKeysToAttend);
+        List<String> websafeKeys = new ArrayList<>(conferencesToAttend.size());
+        for (Key<Conference> conferenceKey : conferencesToAttend) {
+            websafeKeys.add(conferenceKey.getString());
+        }
+        return websafeKeys;
     }
-    
+
+    /**
+     * Returns the keys of the Conferences the user has signed up for, without copying them.
+     *
+     * @return a read-only view of the keys, in registration order.
+     */
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public Set<Key<Conference>> getConferencesToAttend(){
+        return Collections.unmodifiableSet(conferencesToAttend);
+    }
+
+    /**
+     * @param conferenceKey the key of a Conference.
+     * @return true when the user has signed up for the Conference.
+     */
+    public boolean isRegisteredFor(Key<Conference> conferenceKey){
+        return conferencesToAttend.contains(conferenceKey);
+    }
+
     /**
      * @param conferenceKey the key to the new conference that the user is to attend
      */
-    public void addToConferenceKeysToAttend(String conferenceKey){
-        conferenceKeysToAttend.add(conferenceKey);
+    public void addToConferencesToAttend(Key<Conference> conferenceKey){
+        conferencesToAttend.add(conferenceKey);
     }
-    
+
     /*
-     * Removes a conference key from conferenceKeysToAttend
-     * 
-     * @param conferenceKey a websafe representation of the conferenceKey
+     * Removes a conference key from conferencesToAttend
+     *
+     * @param conferenceKey the key of the conference
      */
-    public void unregisterFromConfernce(String conferenceKey){
-        if(conferenceKeysToAttend.contains(conferenceKey)){
-            conferenceKeysToAttend.remove(conferenceKey);
-        }
-        else{
+    public void unregisterFromConference(Key<Conference> conferenceKey){
+        if(!conferencesToAttend.remove(conferenceKey)){
             throw new IllegalArgumentException("Invalid conferenceKey: " + conferenceKey);
         }
     }
 
+    /**
+     * Returns whether the Profile was loaded with the websafe keys stored by earlier versions,
+     * and has to be saved again to drop them.
+     */
+    public boolean hasLegacyConferenceKeys(){
+        return legacyConferenceKeys;
+    }
+
+    /**
+     * Loads the websafe keys earlier versions stored in conferenceKeysToAttend.
+     *
+     * @param websafeKeys the value of the old property.
+     */
+    private void importConferenceKeysToAttend(
+            @AlsoLoad("conferenceKeysToAttend") List<String> websafeKeys){
+        legacyConferenceKeys = true;
+        for (String websafeKey : websafeKeys) {
+            try {
+                conferencesToAttend.add(Key.<Conference>create(websafeKey));
+            } catch (IllegalArgumentException e) {
+                LOG.warning("Skipping malformed conference key: " + websafeKey);
+            }
+        }
+    }
+
 	/**
      * Just making the default constructor private.
      */
@@ -0,0 +1,82 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * SeatShard holds a slice of the available seats of a Conference.
+ *
+ * Each shard is a root entity, so registrations spread over the shards of a Conference don't
+ * contend on the Conference's entity group. The seats of all shards add up to the seats
+ * available for the Conference.
+ */
+@Entity
+public class SeatShard {
+
+    /**
+     * The websafe key of the Conference followed by the shard index.
+     */
+    @Id
+    private String id;
+
+    /**
+     * The Conference this shard counts seats for.
+     */
+    private Key<Conference> conferenceKey;
+
+    /**
+     * Number of seats currently available in this shard.
+     */
+    private int seatsAvailable;
+
+    /**
+     * Just making the default constructor private.
+     */
+    private SeatShard() {}
+
+    public SeatShard(final Key<Conference> conferenceKey, final int index,
+                     final int seatsAvailable) {
+        this.id = createId(conferenceKey, index);
+        this.conferenceKey = conferenceKey;
+        this.seatsAvailable = seatsAvailable;
+    }
+
+    /**
+     * Returns the key of the given shard of a Conference.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @param index the index of the shard.
+     * @return the key of the shard.
+     */
+    public static Key<SeatShard> createKey(final Key<Conference> conferenceKey, final int index) {
+        return Key.create(SeatShard.class, createId(conferenceKey, index));
+    }
+
+    private static String createId(final Key<Conference> conferenceKey, final int index) {
+        return conferenceKey.getString() + "/" + index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Key<Conference> getConferenceKey() {
+        return conferenceKey;
+    }
+
+    public int getSeatsAvailable() {
+        return seatsAvailable;
+    }
+
+    public void bookSeats(final int number) {
+        if (seatsAvailable < number) {
+            throw new IllegalArgumentException("There are no seats available in this shard.");
+        }
+        seatsAvailable = seatsAvailable - number;
+    }
+
+    public void giveBackSeats(final int number) {
+        seatsAvailable = seatsAvailable + number;
+    }
+}
@@ -0,0 +1,55 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.Parent;
+
+/**
+ * TermPosting records that a search term occurs in a Conference, and how often.
+ *
+ * It is a child of the Conference, so that the postings are written in the transaction that
+ * saves the Conference and can be replaced after an ancestor query. Searches query the
+ * postings of a term ordered by frequency.
+ */
+@Entity
+public class TermPosting {
+
+    @Parent
+    private Key<Conference> conferenceKey;
+
+    @Id
+    private String id;
+
+    @Index
+    private String term;
+
+    @Index
+    private int frequency;
+
+    /**
+     * Just making the default constructor private.
+     */
+    private TermPosting() {}
+
+    public TermPosting(final Key<Conference> conferenceKey, final String term,
+                       final int frequency) {
+        this.conferenceKey = conferenceKey;
+        this.id = term;
+        this.term = term;
+        this.frequency = frequency;
+    }
+
+    public Key<Conference> getConferenceKey() {
+        return conferenceKey;
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+}
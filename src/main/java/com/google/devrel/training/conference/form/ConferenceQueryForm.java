@@ -4,13 +4,22 @@ import static com.google.devrel.training.conference.service.OfyService.ofy;
 
 import com.google.api.server.spi.config.AnnotationBoolean;
 import com.google.api.server.spi.config.ApiResourceProperty;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.devrel.training.conference.Constants;
 import com.google.devrel.training.conference.domain.Conference;
 
+import com.googlecode.objectify.Key;
 import com.googlecode.objectify.cmd.Query;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -20,6 +29,11 @@ public class ConferenceQueryForm {
 
     private static final Logger LOG = Logger.getLogger(ConferenceQueryForm.class.getName());
 
+    /**
+     * Estimated fraction of Conferences passing a single inequality filter.
+     */
+    private static final double INEQUALITY_SELECTIVITY = 1.0 / 3;
+
     /**
      * Enum representing a field type.
      */
@@ -31,23 +45,46 @@ public class ConferenceQueryForm {
      * Enum representing a field.
      */
     public static enum Field {
-        CITY("city", FieldType.STRING),
-        TOPIC("topics", FieldType.STRING),
-        MONTH("month", FieldType.INTEGER),
-        MAX_ATTENDEES("maxAttendees", FieldType.INTEGER);
+        CITY("city", FieldType.STRING, 0.05),
+        TOPIC("topics", FieldType.STRING, 0.1),
+        MONTH("month", FieldType.INTEGER, 1.0 / 12),
+        MAX_ATTENDEES("maxAttendees", FieldType.INTEGER, 0.05);
 
         private String fieldName;
 
         private FieldType fieldType;
 
-        private Field(String fieldName, FieldType fieldType) {
+        /**
+         * Estimated fraction of Conferences passing an equality filter on this field.
+         */
+        private double equalitySelectivity;
+
+        private Field(String fieldName, FieldType fieldType, double equalitySelectivity) {
             this.fieldName = fieldName;
             this.fieldType = fieldType;
+            this.equalitySelectivity = equalitySelectivity;
         }
 
         private String getFieldName() {
             return this.fieldName;
         }
+
+        /**
+         * Returns the values of this field of the given Conference.
+         */
+        private List<?> getValues(Conference conference) {
+            switch (this) {
+                case CITY:
+                    return Collections.singletonList(conference.getCity());
+                case TOPIC:
+                    List<String> topics = conference.getTopics();
+                    return topics == null ? Collections.emptyList() : topics;
+                case MONTH:
+                    return Collections.singletonList(conference.getMonth());
+                default:
+                    return Collections.singletonList(conference.getMaxAttendees());
+            }
+        }
     }
 
     /**
@@ -71,10 +108,47 @@ public class ConferenceQueryForm {
             return this.queryOperator;
         }
 
+        private FilterOperator getFilterOperator() {
+            switch (this) {
+                case EQ:
+                    return FilterOperator.EQUAL;
+                case LT:
+                    return FilterOperator.LESS_THAN;
+                case GT:
+                    return FilterOperator.GREATER_THAN;
+                case LTEQ:
+                    return FilterOperator.LESS_THAN_OR_EQUAL;
+                case GTEQ:
+                    return FilterOperator.GREATER_THAN_OR_EQUAL;
+                default:
+                    return FilterOperator.NOT_EQUAL;
+            }
+        }
+
         private boolean isInequalityFilter() {
             return this.queryOperator.contains("<") || this.queryOperator.contains(">") ||
                     this.queryOperator.contains("!");
         }
+
+        /**
+         * Checks the result of comparing a value with the filter value.
+         */
+        private boolean accepts(int comparison) {
+            switch (this) {
+                case EQ:
+                    return comparison == 0;
+                case LT:
+                    return comparison < 0;
+                case GT:
+                    return comparison > 0;
+                case LTEQ:
+                    return comparison <= 0;
+                case GTEQ:
+                    return comparison >= 0;
+                default:
+                    return comparison != 0;
+            }
+        }
     }
 
     /**
@@ -104,6 +178,150 @@ public class ConferenceQueryForm {
         public String getValue() {
             return value;
         }
+
+        /**
+         * Returns the value converted to the type of the field.
+         */
+        @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+        public Object getTypedValue() {
+            return field.fieldType == FieldType.INTEGER ? Integer.parseInt(value) : value;
+        }
+
+        /**
+         * Returns the name of the Conference property the filter applies to.
+         */
+        @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+        public String getPropertyName() {
+            return field.getFieldName();
+        }
+
+        private double estimateSelectivity() {
+            if (operator == Operator.EQ) {
+                return field.equalitySelectivity;
+            }
+            return INEQUALITY_SELECTIVITY;
+        }
+
+        /**
+         * Evaluates this filter the way the datastore does: a multi-valued property passes when
+         * any of its values does.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private boolean matches(Conference conference) {
+            Comparable filterValue = (Comparable) getTypedValue();
+            for (Object value : field.getValues(conference)) {
+                if (value != null && operator.accepts(((Comparable) value).compareTo(filterValue))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return field.getFieldName() + " " + operator.getQueryOperator() + " " + value;
+        }
+    }
+
+    /**
+     * A plan for running the query: the datastore query for the filters the datastore can
+     * evaluate, and a predicate for the remaining filters.
+     *
+     * The datastore only allows inequality filters on a single property. The planner pushes the
+     * equality filters and the inequality filters on the most selective property down to the
+     * datastore, and the rest is applied to the results as they stream in. != filters are always
+     * applied in memory: the datastore runs them as several queries merged together, which
+     * return no cursor to page with, and they hardly narrow the results down anyway.
+     */
+    public static class QueryPlan implements Predicate<Conference> {
+
+        private final Query<Conference> query;
+
+        private final List<Filter> pushedDownFilters;
+
+        private final List<Filter> residualFilters;
+
+        private final List<String> sortProperties;
+
+        private QueryPlan(Query<Conference> query, List<Filter> pushedDownFilters,
+                          List<Filter> residualFilters, List<String> sortProperties) {
+            this.query = query;
+            this.pushedDownFilters = ImmutableList.copyOf(pushedDownFilters);
+            this.residualFilters = ImmutableList.copyOf(residualFilters);
+            this.sortProperties = ImmutableList.copyOf(sortProperties);
+        }
+
+        /**
+         * Returns the datastore query for the pushed down filters.
+         *
+         * @return an Objectify Query.
+         */
+        public Query<Conference> getQuery() {
+            return query;
+        }
+
+        /**
+         * Returns the same query for the low-level datastore API, for the features Objectify
+         * doesn't offer, such as projections.
+         *
+         * @return a new datastore Query, safe to modify.
+         */
+        public com.google.appengine.api.datastore.Query getDatastoreQuery() {
+            com.google.appengine.api.datastore.Query datastoreQuery =
+                    new com.google.appengine.api.datastore.Query(Key.getKind(Conference.class));
+            List<com.google.appengine.api.datastore.Query.Filter> predicates =
+                    new ArrayList<>(pushedDownFilters.size());
+            for (Filter filter : pushedDownFilters) {
+                predicates.add(new FilterPredicate(filter.field.getFieldName(),
+                        filter.operator.getFilterOperator(), filter.getTypedValue()));
+            }
+            if (predicates.size() == 1) {
+                datastoreQuery.setFilter(predicates.get(0));
+            } else if (predicates.size() > 1) {
+                datastoreQuery.setFilter(CompositeFilterOperator.and(predicates));
+            }
+            for (String sortProperty : sortProperties) {
+                datastoreQuery.addSort(sortProperty);
+            }
+            return datastoreQuery;
+        }
+
+        public List<Filter> getPushedDownFilters() {
+            return pushedDownFilters;
+        }
+
+        public List<Filter> getResidualFilters() {
+            return residualFilters;
+        }
+
+        /**
+         * Returns whether some filters have to be applied in memory.
+         */
+        public boolean hasResidualFilters() {
+            return !residualFilters.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return residualFilters.isEmpty() ? query.toString()
+                    : String.format("%s, filtered in memory: %s", query, residualFilters);
+        }
+
+        /**
+         * Applies the residual filters to a Conference returned by the query.
+         *
+         * @param conference a Conference returned by the query.
+         * @return true when the Conference passes all the residual filters.
+         */
+        @Override
+        public boolean apply(Conference conference) {
+            for (Filter filter : residualFilters) {
+                if (!filter.matches(conference)) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     /**
@@ -112,28 +330,16 @@ public class ConferenceQueryForm {
     private List<Filter> filters = new ArrayList<>(0);
 
     /**
-     * Holds the first inequalityFilter for checking the feasibility of the whole query.
+     * The maximum number of Conferences to return in one page, the default page size when 0.
      */
-    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
-    private Filter inequalityFilter;
-
-    public ConferenceQueryForm() {}
+    private int pageSize;
 
     /**
-     * Checks the feasibility of the whole query.
+     * The websafe cursor returned with the previous page, null for the first page.
      */
-    private void checkFilters() {
-        for (Filter filter : this.filters) {
-            if (filter.operator.isInequalityFilter()) {
-                // Only one inequality filter is allowed.
-                if (inequalityFilter != null && !inequalityFilter.field.equals(filter.field)) {
-                    throw new IllegalArgumentException(
-                            "Inequality filter is allowed on only one field.");
-                }
-                inequalityFilter = filter;
-            }
-        }
-    }
+    private String cursor;
+
+    public ConferenceQueryForm() {}
 
     /**
      * Getter for filters.
@@ -144,6 +350,22 @@ public class ConferenceQueryForm {
         return ImmutableList.copyOf(filters);
     }
 
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     /**
      * Adds a query filter.
      *
@@ -151,47 +373,81 @@ public class ConferenceQueryForm {
      * @return this for method chaining.
      */
     public ConferenceQueryForm filter(Filter filter) {
-        if (filter.operator.isInequalityFilter()) {
-            // Only allows inequality filters on a single field.
-            if (inequalityFilter != null && !inequalityFilter.field.equals(filter.field)) {
-                throw new IllegalArgumentException(
-                        "Inequality filter is allowed on only one field.");
-            }
-            inequalityFilter = filter;
-        }
         filters.add(filter);
         return this;
     }
 
     /**
-     * Returns an Objectify Query object for the specified filters.
+     * Returns a canonical form of this query, the same for all the forms asking for the same
+     * page of results: filters are sorted, integer values and the page size are normalized.
      *
-     * @return an Objectify Query.
+     * @return the canonical form of this query.
      */
     @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
-    public Query<Conference> getQuery() {
-        // First check the feasibility of inequality filters.
-        checkFilters();
-        Query<Conference> query = ofy().load().type(Conference.class);
-        if (inequalityFilter == null) {
-            // Order by name.
-            query = query.order("name");
-        } else {
+    public String getCanonicalForm() {
+        List<String> canonicalFilters = new ArrayList<>(filters.size());
+        for (Filter filter : filters) {
+            canonicalFilters.add(filter.field.name() + " " + filter.operator.name() + " "
+                    + filter.getTypedValue());
+        }
+        Collections.sort(canonicalFilters);
+        int limit = pageSize <= 0 ? Constants.DEFAULT_PAGE_SIZE
+                : Math.min(pageSize, Constants.MAX_PAGE_SIZE);
+        return canonicalFilters + " limit " + limit + " cursor " + cursor;
+    }
+
+    /**
+     * Plans the query for the specified filters.
+     *
+     * @return a QueryPlan with an Objectify Query and the filters left to apply in memory.
+     */
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public QueryPlan getQueryPlan() {
+        // Group the inequality filters by field, and pick the field that is estimated to
+        // narrow the result down the most as the one the datastore evaluates.
+        Map<Field, Double> inequalitySelectivity = new EnumMap<>(Field.class);
+        for (Filter filter : this.filters) {
+            if (filter.operator.isInequalityFilter() && filter.operator != Operator.NE) {
+                Double selectivity = inequalitySelectivity.get(filter.field);
+                inequalitySelectivity.put(filter.field, (selectivity == null ? 1.0 : selectivity)
+                        * filter.estimateSelectivity());
+            }
+        }
+        Field inequalityField = null;
+        for (Map.Entry<Field, Double> entry : inequalitySelectivity.entrySet()) {
+            if (inequalityField == null
+                    || entry.getValue() < inequalitySelectivity.get(inequalityField)) {
+                inequalityField = entry.getKey();
+            }
+        }
+
+        List<String> sortProperties = new ArrayList<>(2);
+        if (inequalityField != null) {
             // If we have any inequality filters, order by the field first.
-            query = query.order(inequalityFilter.field.getFieldName());
-            query = query.order("name");
+            sortProperties.add(inequalityField.getFieldName());
+        }
+        // Order by name.
+        sortProperties.add("name");
+        Query<Conference> query = ofy().load().type(Conference.class);
+        for (String sortProperty : sortProperties) {
+            query = query.order(sortProperty);
         }
+        List<Filter> pushedDownFilters = new ArrayList<>(this.filters.size());
+        List<Filter> residualFilters = new ArrayList<>(0);
         for (Filter filter : this.filters) {
-            // Applies filters in order.
-            if (filter.field.fieldType == FieldType.STRING) {
-                query = query.filter(String.format("%s %s", filter.field.getFieldName(),
-                        filter.operator.getQueryOperator()), filter.value);
-            } else if (filter.field.fieldType == FieldType.INTEGER) {
-                query = query.filter(String.format("%s %s", filter.field.getFieldName(),
-                        filter.operator.getQueryOperator()), Integer.parseInt(filter.value));
+            if (filter.operator == Operator.NE
+                    || (filter.operator.isInequalityFilter() && filter.field != inequalityField)) {
+                residualFilters.add(filter);
+                continue;
             }
+            // Applies filters in order.
+            query = query.filter(String.format("%s %s", filter.field.getFieldName(),
+                    filter.operator.getQueryOperator()), filter.getTypedValue());
+            pushedDownFilters.add(filter);
         }
-        LOG.info(query.toString());
-        return query;
+        QueryPlan queryPlan = new QueryPlan(query, pushedDownFilters, residualFilters,
+                sortProperties);
+        LOG.info(queryPlan.toString());
+        return queryPlan;
     }
 }
@@ -0,0 +1,30 @@
+package com.google.devrel.training.conference.form;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Pojo representing the users an organizer registers for a conference in one request.
+ */
+public class GroupRegistrationForm {
+
+    /**
+     * The user IDs of the users to register.
+     */
+    private List<String> userIds;
+
+    private GroupRegistrationForm() {}
+
+    /**
+     * Constructor for GroupRegistrationForm, solely for unit test.
+     * @param userIds The user IDs of the users to register.
+     */
+    public GroupRegistrationForm(List<String> userIds) {
+        this.userIds = userIds == null ? null : ImmutableList.copyOf(userIds);
+    }
+
+    public List<String> getUserIds() {
+        return userIds;
+    }
+}
@@ -0,0 +1,97 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.devrel.training.conference.Constants;
+import com.google.devrel.training.conference.domain.Announcement;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Per-instance cache of the announcement kept in memcache.
+ *
+ * The announcement only changes when a Conference enters or leaves the nearly sold out set, so
+ * each instance keeps the last value it read, including the absence of an announcement, for a
+ * short while. The announcement is stored in memcache with a version number that the publisher
+ * bumps.
+ */
+public class AnnouncementCache {
+
+    /**
+     * How long an instance serves the announcement without looking at memcache.
+     */
+    private static final long TTL_MILLIS = 30 * 1000;
+
+    private static volatile Entry entry;
+
+    private AnnouncementCache() {}
+
+    /**
+     * An announcement as read from memcache, null when there is none.
+     */
+    private static class Entry {
+        private final Announcement announcement;
+        private final Long version;
+        private final long expiresAt;
+
+        private Entry(Announcement announcement, Long version, long expiresAt) {
+            this.announcement = announcement;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Returns the current announcement.
+     *
+     * @return the announcement, or null when there is none.
+     */
+    public static Announcement get() {
+        long now = System.currentTimeMillis();
+        Entry current = entry;
+        if (current != null && now < current.expiresAt) {
+            return current.announcement;
+        }
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        Map<String, Object> values = memcacheService.getAll(Arrays.asList(
+                Constants.MEMCACHE_ANNOUNCEMENTS_KEY,
+                Constants.MEMCACHE_ANNOUNCEMENTS_VERSION_KEY));
+        Long version = (Long) values.get(Constants.MEMCACHE_ANNOUNCEMENTS_VERSION_KEY);
+        Announcement announcement;
+        if (current != null && version != null && version.equals(current.version)) {
+            // Unchanged, keep the same instance.
+            announcement = current.announcement;
+        } else {
+            Object message = values.get(Constants.MEMCACHE_ANNOUNCEMENTS_KEY);
+            announcement = message == null ? null : new Announcement(message.toString());
+        }
+        entry = new Entry(announcement, version, now + TTL_MILLIS);
+        return announcement;
+    }
+
+    /**
+     * Forgets the announcement read last, for tests that start over with an empty memcache.
+     */
+    static void reset() {
+        entry = null;
+    }
+
+    /**
+     * Stores a new announcement in memcache, for all the instances to pick up.
+     *
+     * @param message the announcement, or null to remove the announcement.
+     */
+    public static void publish(String message) {
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        if (message == null) {
+            memcacheService.delete(Constants.MEMCACHE_ANNOUNCEMENTS_KEY);
+        } else {
+            memcacheService.put(Constants.MEMCACHE_ANNOUNCEMENTS_KEY, message);
+        }
+        Long version = memcacheService.increment(Constants.MEMCACHE_ANNOUNCEMENTS_VERSION_KEY, 1,
+                0L);
+        entry = new Entry(message == null ? null : new Announcement(message), version,
+                System.currentTimeMillis() + TTL_MILLIS);
+    }
+}
@@ -0,0 +1,349 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.apphosting.api.ApiProxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-instance metrics of the ConferenceApi endpoints.
+ *
+ * ApiMetricsFilter starts a Call for every endpoint request and keeps it in the request's
+ * environment. The API calls of the request are counted by MetricsDelegate, and the entities it
+ * reads and writes by EntityCountCallbacks. All the counters are atomics, so recording never
+ * takes a lock.
+ */
+public class ApiMetrics {
+
+    /**
+     * Upper bounds of the latency buckets in milliseconds. The last bucket has no upper bound.
+     */
+    public static final long[] LATENCY_BUCKETS_MILLIS =
+            {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private static final String CALL_ATTRIBUTE = ApiMetrics.class.getName() + ".call";
+
+    private static final ConcurrentMap<String, EndpointMetrics> ENDPOINTS =
+            new ConcurrentHashMap<>();
+
+    private static volatile long startMillis = System.currentTimeMillis();
+
+    private ApiMetrics() {}
+
+    /**
+     * Wraps the API proxy delegate of this instance with a MetricsDelegate, unless it is wrapped
+     * already.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized void install() {
+        ApiProxy.Delegate<ApiProxy.Environment> delegate = ApiProxy.getDelegate();
+        if (!(delegate instanceof MetricsDelegate)) {
+            ApiProxy.setDelegate(new MetricsDelegate(delegate));
+        }
+    }
+
+    /**
+     * Starts recording a call of an endpoint on the current request.
+     *
+     * @param endpoint the name of the endpoint method.
+     * @return the Call, to be finished when the request is done.
+     */
+    public static Call start(String endpoint) {
+        EndpointMetrics metrics = ENDPOINTS.get(endpoint);
+        if (metrics == null) {
+            EndpointMetrics newMetrics = new EndpointMetrics(endpoint);
+            metrics = ENDPOINTS.putIfAbsent(endpoint, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        Call call = new Call(metrics, ApiProxy.getCurrentEnvironment());
+        if (call.environment != null) {
+            call.environment.getAttributes().put(CALL_ATTRIBUTE, call);
+        }
+        return call;
+    }
+
+    /**
+     * Returns the Call of the current request.
+     *
+     * @return the Call, or null when the request is not an endpoint call.
+     */
+    public static Call currentCall() {
+        return getCall(ApiProxy.getCurrentEnvironment());
+    }
+
+    /**
+     * Returns the Call of a request.
+     *
+     * @param environment the environment of the request, may be null.
+     * @return the Call, or null when the request is not an endpoint call.
+     */
+    public static Call getCall(ApiProxy.Environment environment) {
+        if (environment == null) {
+            return null;
+        }
+        return (Call) environment.getAttributes().get(CALL_ATTRIBUTE);
+    }
+
+    /**
+     * @return the metrics of all the endpoints called so far, by name.
+     */
+    public static List<EndpointMetrics> getEndpoints() {
+        return new ArrayList<>(new TreeMap<>(ENDPOINTS).values());
+    }
+
+    /**
+     * @return when this instance started collecting metrics, in milliseconds since the epoch.
+     */
+    public static long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Drops all the metrics collected so far, for tests.
+     */
+    static void reset() {
+        ENDPOINTS.clear();
+        startMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * A request to an endpoint in progress.
+     */
+    public static class Call {
+
+        private final EndpointMetrics metrics;
+
+        private final ApiProxy.Environment environment;
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicInteger datastoreRpcs = new AtomicInteger();
+
+        Call(EndpointMetrics metrics, ApiProxy.Environment environment) {
+            this.metrics = metrics;
+            this.environment = environment;
+        }
+
+        void datastoreRpc() {
+            datastoreRpcs.incrementAndGet();
+            metrics.datastoreRpcs.incrementAndGet();
+        }
+
+        void transactionRetry() {
+            metrics.transactionRetries.incrementAndGet();
+        }
+
+        void memcacheGet(int hits, int misses) {
+            metrics.memcacheHits.addAndGet(hits);
+            metrics.memcacheMisses.addAndGet(misses);
+        }
+
+        void entitiesRead(int count) {
+            metrics.entitiesRead.addAndGet(count);
+        }
+
+        void entitiesWritten(int count) {
+            metrics.entitiesWritten.addAndGet(count);
+        }
+
+        void entitiesDeleted(int count) {
+            metrics.entitiesDeleted.addAndGet(count);
+        }
+
+        /**
+         * Records the end of the call. API calls made afterwards are no longer counted.
+         *
+         * @param error the name of the exception the call failed with, null when it succeeded.
+         */
+        public void finish(String error) {
+            if (environment != null) {
+                environment.getAttributes().remove(CALL_ATTRIBUTE);
+            }
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            metrics.record(latencyMillis, datastoreRpcs.get(), error);
+        }
+    }
+
+    /**
+     * The counters of one endpoint.
+     */
+    public static class EndpointMetrics {
+
+        private final String name;
+
+        private final AtomicLong calls = new AtomicLong();
+
+        private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+        private final AtomicLongArray latencyBuckets =
+                new AtomicLongArray(LATENCY_BUCKETS_MILLIS.length + 1);
+
+        private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+        private final AtomicLong datastoreRpcs = new AtomicLong();
+
+        private final AtomicLong maxDatastoreRpcs = new AtomicLong();
+
+        private final AtomicLong entitiesRead = new AtomicLong();
+
+        private final AtomicLong entitiesWritten = new AtomicLong();
+
+        private final AtomicLong entitiesDeleted = new AtomicLong();
+
+        private final AtomicLong transactionRetries = new AtomicLong();
+
+        private final AtomicLong memcacheHits = new AtomicLong();
+
+        private final AtomicLong memcacheMisses = new AtomicLong();
+
+        EndpointMetrics(String name) {
+            this.name = name;
+        }
+
+        private void record(long latencyMillis, int callDatastoreRpcs, String error) {
+            calls.incrementAndGet();
+            totalLatencyMillis.addAndGet(latencyMillis);
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_MILLIS.length
+                    && latencyMillis > LATENCY_BUCKETS_MILLIS[bucket]) {
+                bucket++;
+            }
+            latencyBuckets.incrementAndGet(bucket);
+            long max = maxDatastoreRpcs.get();
+            while (callDatastoreRpcs > max
+                    && !maxDatastoreRpcs.compareAndSet(max, callDatastoreRpcs)) {
+                max = maxDatastoreRpcs.get();
+            }
+            if (error != null) {
+                AtomicLong count = errors.get(error);
+                if (count == null) {
+                    AtomicLong newCount = new AtomicLong();
+                    count = errors.putIfAbsent(error, newCount);
+                    if (count == null) {
+                        count = newCount;
+                    }
+                }
+                count.incrementAndGet();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getTotalLatencyMillis() {
+            return totalLatencyMillis.get();
+        }
+
+        /**
+         * @return the number of calls per latency bucket, see LATENCY_BUCKETS_MILLIS.
+         */
+        public long[] getLatencyBuckets() {
+            long[] buckets = new long[latencyBuckets.length()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = latencyBuckets.get(i);
+            }
+            return buckets;
+        }
+
+        /**
+         * Estimates a latency percentile from the histogram.
+         *
+         * @param percentile the percentile, between 0 and 100.
+         * @return the upper bound of the bucket the percentile falls in, Long.MAX_VALUE for the
+         *         last bucket, or 0 when there were no calls.
+         */
+        public long getLatencyPercentileMillis(double percentile) {
+            long[] buckets = getLatencyBuckets();
+            long total = 0;
+            for (long count : buckets) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS_MILLIS.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return LATENCY_BUCKETS_MILLIS[i];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * @return the number of failed calls by the name of the exception.
+         */
+        public Map<String, Long> getErrors() {
+            Map<String, Long> counts = new TreeMap<>();
+            for (Map.Entry<String, AtomicLong> error : errors.entrySet()) {
+                counts.put(error.getKey(), error.getValue().get());
+            }
+            return Collections.unmodifiableMap(counts);
+        }
+
+        public long getErrorCount() {
+            long count = 0;
+            for (AtomicLong errorCount : errors.values()) {
+                count += errorCount.get();
+            }
+            return count;
+        }
+
+        public long getDatastoreRpcs() {
+            return datastoreRpcs.get();
+        }
+
+        /**
+         * @return the largest number of datastore RPCs made by a single call.
+         */
+        public long getMaxDatastoreRpcs() {
+            return maxDatastoreRpcs.get();
+        }
+
+        public long getEntitiesRead() {
+            return entitiesRead.get();
+        }
+
+        public long getEntitiesWritten() {
+            return entitiesWritten.get();
+        }
+
+        public long getEntitiesDeleted() {
+            return entitiesDeleted.get();
+        }
+
+        /**
+         * @return the number of transaction commits that failed on contention, which Objectify
+         *         retries.
+         */
+        public long getTransactionRetries() {
+            return transactionRetries.get();
+        }
+
+        public long getMemcacheHits() {
+            return memcacheHits.get();
+        }
+
+        public long getMemcacheMisses() {
+            return memcacheMisses.get();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Facets;
+import com.google.devrel.training.conference.domain.Facets.FacetCount;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Suggests cities and topics for the filters of the conference list, most Conferences first.
+ *
+ * Each instance keeps a PrefixIndex per field, weighted by the number of Conferences. Conferences
+ * created on the instance are added as they are saved. Every REFRESH_INTERVAL_MILLIS the
+ * indexes are rebuilt from the FacetCounter shards, which picks up the Conferences created
+ * elsewhere. The one request that notices first rebuilds them, and no other request waits for
+ * it: they keep answering from the current indexes. Conferences added on the instance while the
+ * shards are read are merged into the rebuilt indexes, so they can't go missing. A Conference
+ * counted in the shards too only weighs one more.
+ */
+public class Autocomplete {
+
+    private static final Logger LOG = Logger.getLogger(Autocomplete.class.getName());
+
+    public static enum Field {
+        CITY,
+        TOPIC
+    }
+
+    public static final int MAX_SUGGESTIONS = 20;
+
+    static final long REFRESH_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+    private static final AtomicReference<PrefixIndex> CITIES =
+            new AtomicReference<>(PrefixIndex.EMPTY);
+
+    private static final AtomicReference<PrefixIndex> TOPICS =
+            new AtomicReference<>(PrefixIndex.EMPTY);
+
+    /**
+     * When the indexes were last rebuilt, 0 for never.
+     */
+    private static volatile long refreshedMillis;
+
+    /**
+     * Set while a request rebuilds the indexes.
+     */
+    private static final AtomicBoolean REFRESHING = new AtomicBoolean();
+
+    /**
+     * Guards the updates of the indexes, and addedDuringRefresh.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * The Conferences added while the indexes are being rebuilt, null when they aren't.
+     */
+    private static List<Conference> addedDuringRefresh;
+
+    private Autocomplete() {}
+
+    /**
+     * Returns the values of a field starting with a prefix, ignoring case.
+     *
+     * @param field the field.
+     * @param prefix the prefix, may be empty.
+     * @param limit the largest number of suggestions, at most MAX_SUGGESTIONS.
+     * @return the values, most Conferences first.
+     */
+    public static List<String> suggest(final Field field, final String prefix, final int limit) {
+        if (System.currentTimeMillis() - refreshedMillis > REFRESH_INTERVAL_MILLIS) {
+            refreshIfStale();
+        }
+        return getIndex(field).get().complete(prefix, Math.min(limit, MAX_SUGGESTIONS));
+    }
+
+    /**
+     * Adds a Conference saved on this instance to the indexes.
+     *
+     * @param conference the new Conference.
+     */
+    public static void conferenceAdded(final Conference conference) {
+        synchronized (LOCK) {
+            CITIES.set(plusCity(CITIES.get(), conference));
+            TOPICS.set(plusTopics(TOPICS.get(), conference));
+            if (addedDuringRefresh != null) {
+                addedDuringRefresh.add(conference);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the indexes from the FacetCounter shards.
+     */
+    public static synchronized void refresh() {
+        synchronized (LOCK) {
+            addedDuringRefresh = new ArrayList<>();
+        }
+        try {
+            Facets facets = FacetCounter.readShards();
+            PrefixIndex cities = PrefixIndex.of(getWeights(facets.getCities()));
+            PrefixIndex topics = PrefixIndex.of(getWeights(facets.getTopics()));
+            synchronized (LOCK) {
+                for (Conference conference : addedDuringRefresh) {
+                    cities = plusCity(cities, conference);
+                    topics = plusTopics(topics, conference);
+                }
+                CITIES.set(cities);
+                TOPICS.set(topics);
+            }
+        } finally {
+            synchronized (LOCK) {
+                addedDuringRefresh = null;
+            }
+        }
+        refreshedMillis = System.currentTimeMillis();
+    }
+
+    private static void refreshIfStale() {
+        // Concurrent requests that noticed too answer from the current indexes
+        if (!REFRESHING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (System.currentTimeMillis() - refreshedMillis > REFRESH_INTERVAL_MILLIS) {
+                refresh();
+            }
+        } catch (RuntimeException e) {
+            // The next request tries again
+            LOG.log(Level.WARNING, "Failed to refresh the autocomplete indexes", e);
+        } finally {
+            REFRESHING.set(false);
+        }
+    }
+
+    private static PrefixIndex plusCity(PrefixIndex index, Conference conference) {
+        return conference.getCity() == null ? index : index.plus(conference.getCity(), 1);
+    }
+
+    private static PrefixIndex plusTopics(PrefixIndex index, Conference conference) {
+        if (conference.getTopics() != null) {
+            for (String topic : conference.getTopics()) {
+                index = index.plus(topic, 1);
+            }
+        }
+        return index;
+    }
+
+    private static AtomicReference<PrefixIndex> getIndex(Field field) {
+        return field == Field.CITY ? CITIES : TOPICS;
+    }
+
+    private static Map<String, Long> getWeights(List<FacetCount> counts) {
+        Map<String, Long> weights = new HashMap<>();
+        for (FacetCount count : counts) {
+            weights.put(count.getValue(), count.getConferences());
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,133 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.devrel.training.conference.domain.Conference;
+import com.googlecode.objectify.cmd.Query;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes the Conference catalog as newline-delimited JSON, one Conference per line.
+ *
+ * The Conference kind is walked a chunk at a time with a cursor. Each chunk is a single query
+ * for whole entities and a batch load of its organizers, and the session is cleared after it is
+ * written.
+ *
+ * App Engine doesn't stream responses: the whole body is held in memory until the request ends,
+ * up to 32 MB, and flushing the writer changes nothing. Memory is bounded by the cursor
+ * instead: a call stops after about MAX_CHARS characters, and the next request carries on from
+ * the cursor it returns.
+ */
+public class ConferenceExporter {
+
+    /**
+     * Conferences read per query.
+     */
+    public static final int CHUNK_SIZE = 200;
+
+    /**
+     * No chunk is started once a call has written this many characters. With a chunk on top,
+     * the response stays well under the 32 MB limit.
+     */
+    public static final int MAX_CHARS = 4 * 1024 * 1024;
+
+    private ConferenceExporter() {}
+
+    /**
+     * Writes Conferences until they run out, the deadline passes or MAX_CHARS have been written.
+     * At least one chunk is written, so every call makes progress.
+     *
+     * @param writer where the lines go.
+     * @param cursor the websafe cursor returned by the previous call, null to start over.
+     * @param deadlineMillis no chunk is started from this time on.
+     * @return the cursor to resume from, or null when all the Conferences have been written.
+     * @throws IOException when writing fails.
+     * @throws IllegalArgumentException when the cursor is malformed.
+     */
+    public static String export(final Writer writer, final String cursor,
+                                final long deadlineMillis) throws IOException {
+        return export(writer, cursor, deadlineMillis, MAX_CHARS);
+    }
+
+    static String export(final Writer writer, final String cursor, final long deadlineMillis,
+                         final int maxChars) throws IOException {
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String nextCursor = cursor;
+        long written = 0;
+        do {
+            // Whole entities in one query, rather than keys followed by a cached get
+            Query<Conference> query = ofy().load().type(Conference.class).hybrid(false)
+                    .limit(CHUNK_SIZE);
+            if (nextCursor != null) {
+                query = query.startAt(Cursor.fromWebSafeString(nextCursor));
+            }
+            QueryResultIterator<Conference> iterator = query.iterator();
+            List<Conference> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+            }
+            OrganizerNameResolver.resolve(chunk);
+            for (Conference conference : chunk) {
+                String line = formatLine(conference, dateFormat);
+                writer.write(line);
+                written += line.length();
+            }
+            // The session would otherwise keep every Conference and organizer written so far
+            ofy().clear();
+            if (chunk.size() < CHUNK_SIZE) {
+                return null;
+            }
+            nextCursor = iterator.getCursor().toWebSafeString();
+        } while (written < maxChars && System.currentTimeMillis() < deadlineMillis);
+        return nextCursor;
+    }
+
+    private static String formatLine(Conference conference, DateFormat dateFormat) {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"websafeKey\":").append(JsonLines.quote(conference.getWebsafeKey()))
+                .append(",\"name\":").append(JsonLines.quote(conference.getName()))
+                .append(",\"description\":")
+                .append(JsonLines.quote(conference.getDescription()))
+                .append(",\"topics\":");
+        if (conference.getTopics() == null) {
+            line.append("null");
+        } else {
+            line.append('[');
+            for (int i = 0; i < conference.getTopics().size(); i++) {
+                line.append(i == 0 ? "" : ",").append(JsonLines.quote(
+                        conference.getTopics().get(i)));
+            }
+            line.append(']');
+        }
+        line.append(",\"city\":").append(JsonLines.quote(conference.getCity()))
+                .append(",\"startDate\":")
+                .append(JsonLines.quote(format(dateFormat, conference.getStartDate())))
+                .append(",\"endDate\":")
+                .append(JsonLines.quote(format(dateFormat, conference.getEndDate())))
+                .append(",\"maxAttendees\":").append(String.valueOf(conference.getMaxAttendees()))
+                .append(",\"seatsAvailable\":")
+                .append(String.valueOf(conference.getSeatsAvailable()))
+                .append(",\"organizerUserId\":")
+                .append(JsonLines.quote(conference.getOrganizerUserId()))
+                .append(",\"organizerDisplayName\":")
+                .append(JsonLines.quote(conference.getOrganizerDisplayName()))
+                .append("}\n");
+        return line.toString();
+    }
+
+    private static String format(DateFormat dateFormat, Date date) {
+        return date == null ? null : dateFormat.format(date);
+    }
+}
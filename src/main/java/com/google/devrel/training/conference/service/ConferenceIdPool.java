@@ -0,0 +1,163 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.KeyRange;
+import com.google.devrel.training.conference.domain.Conference;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.ObjectifyService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands out Conference IDs from ranges reserved in bulk.
+ *
+ * Conferences are children of their organizer's Profile, and the datastore allocates the IDs
+ * of child entities per parent, so the instance keeps a range per organizer. The range is
+ * allocated under the Profile key with allocateIds, which keeps the IDs apart from those of the
+ * organizer's existing Conferences. When a range runs low the next one is requested with an
+ * asynchronous call, which is usually complete by the time the current range is used up.
+ *
+ * Only the most recently active organizers keep a range. The first Conference of any other
+ * organizer waits for an allocation, without holding a lock, so creates for other organizers
+ * carry on meanwhile.
+ */
+public class ConferenceIdPool {
+
+    private static final Logger LOG = Logger.getLogger(ConferenceIdPool.class.getName());
+
+    /**
+     * Number of IDs reserved with one allocation.
+     */
+    static final int RANGE_SIZE = 20;
+
+    /**
+     * The next range is requested when this many IDs are left.
+     */
+    static final int LOW_WATER_MARK = 5;
+
+    /**
+     * Number of organizers whose range is kept.
+     */
+    static final int MAX_ORGANIZERS = 1000;
+
+    /**
+     * The range of an organizer. Callers wait for an allocation without holding any lock, and
+     * the callers of the same organizer share the one in flight.
+     */
+    private static class Range {
+
+        /**
+         * The next ID to hand out.
+         */
+        private long nextId;
+
+        /**
+         * The end of the current range, exclusive.
+         */
+        private long endId;
+
+        /**
+         * The allocation of the next range, null when none is in flight.
+         */
+        private Future<KeyRange> pendingRange;
+
+        private long nextId(final Key<?> profileKey) {
+            while (true) {
+                Future<KeyRange> awaited;
+                synchronized (this) {
+                    if (nextId < endId) {
+                        long id = nextId++;
+                        if (endId - nextId <= LOW_WATER_MARK && pendingRange == null) {
+                            pendingRange = allocateAsync(profileKey);
+                        }
+                        return id;
+                    }
+                    if (pendingRange == null) {
+                        pendingRange = allocateAsync(profileKey);
+                    }
+                    awaited = pendingRange;
+                }
+                KeyRange keyRange = await(profileKey, awaited);
+                synchronized (this) {
+                    // The first caller to get here uses the range, the others find it in use
+                    if (pendingRange == awaited) {
+                        pendingRange = null;
+                        if (nextId >= endId) {
+                            nextId = keyRange.getStart().getId();
+                            endId = keyRange.getEnd().getId() + 1;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * The ranges by Profile key, least recently used first. Guarded by LOCK, which is never
+     * held during an allocation.
+     */
+    private static final Map<Key<?>, Range> RANGES =
+            new LinkedHashMap<Key<?>, Range>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key<?>, Range> eldest) {
+                    return size() > MAX_ORGANIZERS;
+                }
+            };
+
+    private ConferenceIdPool() {}
+
+    /**
+     * Returns a key for a new Conference.
+     *
+     * @param profileKey the key of the organizer's Profile, the parent of the Conference.
+     * @return an unused Conference key.
+     */
+    public static Key<Conference> nextKey(final Key<?> profileKey) {
+        Range range;
+        synchronized (LOCK) {
+            range = RANGES.get(profileKey);
+            if (range == null) {
+                range = new Range();
+                RANGES.put(profileKey, range);
+            }
+        }
+        return Key.create(profileKey, Conference.class, range.nextId(profileKey));
+    }
+
+    private static Future<KeyRange> allocateAsync(final Key<?> profileKey) {
+        return DatastoreServiceFactory.getAsyncDatastoreService().allocateIds(
+                profileKey.getRaw(), Key.getKind(Conference.class), RANGE_SIZE);
+    }
+
+    /**
+     * Waits for an allocation, or allocates a range right away when it failed.
+     */
+    private static KeyRange await(final Key<?> profileKey, final Future<KeyRange> range) {
+        try {
+            return range.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.log(Level.WARNING, "Interrupted while allocating Conference IDs", e);
+        } catch (ExecutionException e) {
+            LOG.log(Level.WARNING, "Failed to allocate Conference IDs", e);
+        }
+        return ObjectifyService.factory().allocateIds(profileKey, Conference.class, RANGE_SIZE)
+                .getRaw();
+    }
+
+    /**
+     * Drops the current ranges, for tests that start over with an empty datastore.
+     */
+    static void reset() {
+        synchronized (LOCK) {
+            RANGES.clear();
+        }
+    }
+}
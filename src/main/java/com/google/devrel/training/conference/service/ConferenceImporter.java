@@ -0,0 +1,511 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+import com.googlecode.objectify.Work;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Imports Conferences in bulk from CSV or newline-delimited JSON.
+ *
+ * Rows are read one at a time and validated. Valid rows are written in batches of up to
+ * BATCH_SIZE Conferences, each with IDs from one allocated range. Once the import runs past its
+ * deadline, the remaining batches are handed to tasks, which write them with the IDs allocated
+ * for them, so a retried task overwrites its own Conferences.
+ *
+ * CSV starts with a header row naming the columns, which are those of NDJSON members: name,
+ * description, topics, city, startDate, endDate and maxAttendees. Topics are separated by
+ * semicolons in CSV, and dates are written as yyyy-MM-dd. Quoted CSV fields can't span lines.
+ */
+public class ConferenceImporter {
+
+    public static enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /**
+     * The largest number of Conferences written together.
+     */
+    public static final int BATCH_SIZE = 250;
+
+    /**
+     * A batch handed to a task is cut short at this size, below the limit of a task payload.
+     */
+    static final int MAX_BATCH_BYTES = 90 * 1024;
+
+    /**
+     * Only the first errors are reported, the rest are only counted.
+     */
+    public static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final int MAX_TASKS_PER_ADD = 100;
+
+    static final List<String> COLUMNS = ImmutableList.of("name", "description", "topics", "city",
+            "startDate", "endDate", "maxAttendees");
+
+    private ConferenceImporter() {}
+
+    /**
+     * A row that failed validation.
+     */
+    public static class RowError {
+
+        private final int line;
+
+        private final String message;
+
+        public RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * The outcome of an import.
+     */
+    public static class Report {
+
+        private int imported;
+
+        private int queued;
+
+        private int errorCount;
+
+        private final List<RowError> errors = new ArrayList<>();
+
+        /**
+         * @return the number of Conferences written by the import itself.
+         */
+        public int getImported() {
+            return imported;
+        }
+
+        /**
+         * @return the number of Conferences handed to tasks.
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * @return the first MAX_REPORTED_ERRORS errors, in line order.
+         */
+        public List<RowError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        private void addError(int line, String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+
+    /**
+     * Reads rows and imports the valid ones.
+     *
+     * @param reader the rows, one per line. Blank lines are skipped.
+     * @param format the format of the rows.
+     * @param organizerUserId the user ID of the organizer of the Conferences.
+     * @param organizerEmail the organizer's e-mail, for a Profile created on the way.
+     * @param sendEmails whether the organizer gets a confirmation e-mail per Conference.
+     * @param deadlineMillis from this time on, batches are queued instead of written.
+     * @return the counts of Conferences imported and queued, and the rows that failed.
+     * @throws IOException when the rows can't be read.
+     * @throws IllegalArgumentException when the CSV header is invalid.
+     */
+    public static Report importRows(final BufferedReader reader, final Format format,
+                                    final String organizerUserId, final String organizerEmail,
+                                    final boolean sendEmails, final long deadlineMillis)
+            throws IOException {
+        ensureProfile(organizerUserId, organizerEmail);
+        Report report = new Report();
+        String header = null;
+        Map<String, Integer> columns = null;
+        List<ConferenceForm> forms = new ArrayList<>(BATCH_SIZE);
+        StringBuilder rows = new StringBuilder();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                columns = parseHeader(line);
+                header = line;
+                continue;
+            }
+            try {
+                forms.add(parseRow(format, columns, line));
+            } catch (IllegalArgumentException e) {
+                report.addError(lineNumber, e.getMessage());
+                continue;
+            }
+            rows.append(line).append('\n');
+            if (forms.size() >= BATCH_SIZE || rows.length() >= MAX_BATCH_BYTES) {
+                flush(report, format, header, forms, rows, organizerUserId, sendEmails,
+                        deadlineMillis);
+            }
+        }
+        flush(report, format, header, forms, rows, organizerUserId, sendEmails, deadlineMillis);
+        return report;
+    }
+
+    /**
+     * Writes a batch handed to a task.
+     *
+     * @param rows the rows of the batch, with the header first for CSV. All of them are valid.
+     * @param format the format of the rows.
+     * @param organizerUserId the user ID of the organizer of the Conferences.
+     * @param firstId the first ID of the range allocated for the batch.
+     * @param sendEmails whether the organizer gets a confirmation e-mail per Conference.
+     * @throws IOException never, the rows are in memory.
+     */
+    public static void importBatch(final String rows, final Format format,
+                                   final String organizerUserId, final long firstId,
+                                   final boolean sendEmails) throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(rows));
+        Map<String, Integer> columns = format == Format.CSV ? parseHeader(reader.readLine()) : null;
+        List<ConferenceForm> forms = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                forms.add(parseRow(format, columns, line));
+            }
+        }
+        save(organizerUserId, firstId, forms, sendEmails);
+    }
+
+    private static void flush(Report report, Format format, String header,
+                              List<ConferenceForm> forms, StringBuilder rows,
+                              String organizerUserId, boolean sendEmails, long deadlineMillis) {
+        if (forms.isEmpty()) {
+            return;
+        }
+        // Allocated under the Profile, the parent of the Conferences
+        long firstId = OfyService.factory().allocateIds(
+                Key.create(Profile.class, organizerUserId), Conference.class, forms.size())
+                .getRaw().getStart().getId();
+        if (System.currentTimeMillis() < deadlineMillis) {
+            save(organizerUserId, firstId, forms, sendEmails);
+            report.imported += forms.size();
+        } else {
+            String payload = header == null ? rows.toString() : header + "\n" + rows;
+            // The rows are the payload, so the rest goes in the query string, which a POST
+            // task can't have
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder
+                    .withMethod(TaskOptions.Method.PUT)
+                    .url("/tasks/import_conferences?format=" + format.name()
+                            + "&organizerUserId=" + urlEncode(organizerUserId)
+                            + "&firstId=" + firstId + "&sendEmails=" + sendEmails)
+                    .payload(payload.getBytes(Charsets.UTF_8), "text/plain; charset=UTF-8"));
+            report.queued += forms.size();
+        }
+        forms.clear();
+        rows.setLength(0);
+    }
+
+    /**
+     * Writes the Conferences of a batch with consecutive IDs in one batch put, and counts and
+     * indexes the new ones. They all belong to the organizer's entity group.
+     */
+    private static void save(final String organizerUserId, long firstId,
+                             List<ConferenceForm> forms, boolean sendEmails) {
+        final Key<Profile> profileKey = Key.create(Profile.class, organizerUserId);
+        final List<Conference> conferences = new ArrayList<>(forms.size());
+        for (int i = 0; i < forms.size(); i++) {
+            conferences.add(new Conference(firstId + i, organizerUserId, forms.get(i)));
+        }
+        // The Conferences this batch creates, as opposed to those a retried batch saved before
+        final List<Conference> added = new ArrayList<>(conferences.size());
+        Profile profile = ofy().transact(new Work<Profile>() {
+            @Override
+            public Profile run() {
+                added.clear();
+                // Read with the Conferences, so that a concurrent rename can't be missed
+                Profile profile = ofy().load().key(profileKey).now();
+                for (Conference conference : conferences) {
+                    conference.setOrganizerDisplayName(profile == null ? organizerUserId
+                            : profile.getDisplayName());
+                }
+                // A retried batch finds its Conferences, which are counted already
+                Map<Key<Conference>, Conference> existing = ofy().load().entities(conferences);
+                for (Conference conference : conferences) {
+                    if (!existing.containsKey(conference.getKey())) {
+                        added.add(conference);
+                    }
+                }
+                ofy().save().entities(conferences).now();
+                if (!added.isEmpty()) {
+                    FacetCounter.conferencesAdded(added);
+                }
+                for (Conference conference : added) {
+                    ConferenceSearch.index(conference);
+                }
+                return profile;
+            }
+        });
+        for (Conference conference : added) {
+            Autocomplete.conferenceAdded(conference);
+        }
+        if (sendEmails && profile != null && profile.getMainEmail() != null) {
+            queueEmails(profile.getMainEmail(), conferences);
+        }
+        // Cached query results may be missing the new conferences
+        QueryResultCache.invalidate();
+    }
+
+    private static void queueEmails(String email, List<Conference> conferences) {
+        Queue queue = ConfirmationEmailSender.getQueue();
+        List<TaskOptions> tasks = new ArrayList<>(conferences.size());
+        for (Conference conference : conferences) {
+            // Named, so that a retried batch doesn't send the e-mails twice
+            tasks.add(ConfirmationEmailSender.createTask(email, conference.toString())
+                    .taskName("import-" + conference.getId()));
+        }
+        for (List<TaskOptions> batch : Lists.partition(tasks, MAX_TASKS_PER_ADD)) {
+            try {
+                queue.add(batch);
+            } catch (TaskAlreadyExistsException e) {
+                // Sent by an earlier try, the other tasks of the batch were added
+            }
+        }
+    }
+
+    private static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void ensureProfile(final String userId, final String email) {
+        final Key<Profile> profileKey = Key.create(Profile.class, userId);
+        if (ofy().load().key(profileKey).now() != null) {
+            return;
+        }
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                if (ofy().load().key(profileKey).now() == null) {
+                    String displayName = email == null ? null
+                            : email.substring(0, email.indexOf("@"));
+                    ofy().save().entity(new Profile(userId, displayName, email,
+                            TeeShirtSize.NOT_SPECIFIED)).now();
+                }
+            }
+        });
+    }
+
+    /**
+     * Maps the column names of a CSV header to their positions.
+     *
+     * @throws IllegalArgumentException when a column is unknown or repeated, or name is missing.
+     */
+    static Map<String, Integer> parseHeader(String header) {
+        if (header == null) {
+            throw new IllegalArgumentException("The CSV header is missing");
+        }
+        List<String> names = parseCsvLine(header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim();
+            if (!COLUMNS.contains(name)) {
+                throw new IllegalArgumentException("Unknown column " + name + ", expected "
+                        + COLUMNS);
+            }
+            if (columns.put(name, i) != null) {
+                throw new IllegalArgumentException("Repeated column " + name);
+            }
+        }
+        if (!columns.containsKey("name")) {
+            throw new IllegalArgumentException("The name column is missing");
+        }
+        return columns;
+    }
+
+    /**
+     * Parses and validates a row.
+     *
+     * @throws IllegalArgumentException with a message for the organizer when the row is invalid.
+     */
+    static ConferenceForm parseRow(Format format, Map<String, Integer> columns, String line) {
+        Map<String, Object> values = new HashMap<>();
+        if (format == Format.CSV) {
+            List<String> fields = parseCsvLine(line);
+            if (fields.size() > columns.size()) {
+                throw new IllegalArgumentException(String.format(
+                        "Expected %d fields but found %d", columns.size(), fields.size()));
+            }
+            for (Map.Entry<String, Integer> column : columns.entrySet()) {
+                String field = column.getValue() < fields.size()
+                        ? fields.get(column.getValue()).trim() : "";
+                if (field.isEmpty()) {
+                    continue;
+                }
+                if ("topics".equals(column.getKey())) {
+                    List<String> topics = new ArrayList<>();
+                    for (String topic : field.split(";")) {
+                        if (!topic.trim().isEmpty()) {
+                            topics.add(topic.trim());
+                        }
+                    }
+                    values.put("topics", topics);
+                } else {
+                    values.put(column.getKey(), field);
+                }
+            }
+        } else {
+            values.putAll(JsonLines.parseObject(line));
+        }
+
+        String name = getString(values, "name");
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        Date startDate = getDate(values, "startDate");
+        Date endDate = getDate(values, "endDate");
+        if (startDate != null && endDate != null && endDate.before(startDate)) {
+            throw new IllegalArgumentException("endDate is before startDate");
+        }
+        int maxAttendees = getInt(values, "maxAttendees");
+        if (maxAttendees < 0) {
+            throw new IllegalArgumentException("maxAttendees can't be negative");
+        }
+        return new ConferenceForm(name.trim(), getString(values, "description"),
+                getTopics(values), getString(values, "city"), startDate, endDate, maxAttendees);
+    }
+
+    /**
+     * Splits a CSV line into its fields. Fields may be quoted, with doubled quotes inside.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String getString(Map<String, Object> values, String name) {
+        Object value = values.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException(name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static Date getDate(Map<String, Object> values, String name) {
+        String value = getString(values, name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        dateFormat.setLenient(false);
+        try {
+            return dateFormat.parse(value);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(name + " must be a date like 2015-03-25");
+        }
+    }
+
+    private static int getInt(Map<String, Object> values, String name) {
+        Object value = values.get(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return value instanceof BigDecimal ? ((BigDecimal) value).intValueExact()
+                    : Integer.parseInt((String) value);
+        } catch (ArithmeticException | NumberFormatException | ClassCastException e) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+    }
+
+    private static List<String> getTopics(Map<String, Object> values) {
+        Object value = values.get("topics");
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("topics must be a list");
+        }
+        List<String> topics = new ArrayList<>();
+        for (Object topic : (List<?>) value) {
+            if (!(topic instanceof String)) {
+                throw new IllegalArgumentException("topics must be strings");
+            }
+            topics.add((String) topic);
+        }
+        return topics;
+    }
+}
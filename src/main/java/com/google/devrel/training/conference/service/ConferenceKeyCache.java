@@ -0,0 +1,41 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.devrel.training.conference.domain.Conference;
+import com.googlecode.objectify.Key;
+
+/**
+ * Parses websafe Conference keys, remembering the most recently used ones.
+ *
+ * The endpoints taking a websafeConferenceKey see the same few keys over and over, and parsing
+ * one decodes base64 and a protocol buffer each time. Keys are immutable, so parsed ones can be
+ * shared between requests.
+ */
+public class ConferenceKeyCache {
+
+    private static final int MAXIMUM_SIZE = 10000;
+
+    private static final Cache<String, Key<Conference>> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .build();
+
+    private ConferenceKeyCache() {}
+
+    /**
+     * Returns the key for a websafe key string.
+     *
+     * @param websafeConferenceKey The String representation of the Conference Key.
+     * @return the Conference key.
+     * @throws IllegalArgumentException when the string isn't a valid key.
+     */
+    public static Key<Conference> parse(final String websafeConferenceKey) {
+        Key<Conference> conferenceKey = CACHE.getIfPresent(websafeConferenceKey);
+        if (conferenceKey == null) {
+            // Malformed strings throw here, so they are never cached.
+            conferenceKey = Key.create(websafeConferenceKey);
+            CACHE.put(websafeConferenceKey, conferenceKey);
+        }
+        return conferenceKey;
+    }
+}
@@ -0,0 +1,70 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.devrel.training.conference.domain.Conference;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+import com.googlecode.objectify.cmd.Query;
+
+import java.util.logging.Logger;
+
+/**
+ * Re-saves Conferences so that properties indexed after they were written get indexed.
+ *
+ * Projection queries skip entities without an index entry for every projected property, so
+ * Conferences stored before startDate and endDate were indexed don't show up in summaries
+ * until they are saved again. Conferences created before search are added to its index on the
+ * way, and those created before the organizer's display name was stored get it. Each
+ * Conference is saved in its own transaction so that concurrent updates aren't overwritten.
+ */
+public class ConferenceReindexer {
+
+    private static final Logger LOG = Logger.getLogger(ConferenceReindexer.class.getName());
+
+    public static final int BATCH_SIZE = 100;
+
+    private ConferenceReindexer() {}
+
+    /**
+     * Re-saves the next batch of Conferences.
+     *
+     * @param cursor the websafe cursor returned for the previous batch, null for the first.
+     * @return the cursor for the next batch, or null when all the Conferences have been saved.
+     */
+    public static String reindexBatch(final String cursor) {
+        Query<Conference> query = ofy().load().type(Conference.class).limit(BATCH_SIZE);
+        if (cursor != null) {
+            query = query.startAt(Cursor.fromWebSafeString(cursor));
+        }
+        QueryResultIterator<Key<Conference>> iterator = query.keys().iterator();
+        int reindexed = 0;
+        while (iterator.hasNext()) {
+            final Key<Conference> conferenceKey = iterator.next();
+            ofy().transact(new VoidWork() {
+                @Override
+                public void vrun() {
+                    Conference conference = ofy().load().key(conferenceKey).now();
+                    if (conference != null) {
+                        if (!conference.hasOrganizerDisplayName()) {
+                            // Loads the organizer's Profile, in the same entity group
+                            conference.setOrganizerDisplayName(
+                                    conference.getOrganizerDisplayName());
+                        }
+                        ofy().save().entity(conference).now();
+                        ConferenceSearch.reindex(conference);
+                    }
+                }
+            });
+            reindexed++;
+        }
+        LOG.info(String.format("Reindexed %d conferences", reindexed));
+        if (reindexed > 0) {
+            // Summaries of the re-saved Conferences can appear now
+            QueryResultCache.invalidate();
+        }
+        return reindexed < BATCH_SIZE ? null : iterator.getCursor().toWebSafeString();
+    }
+}
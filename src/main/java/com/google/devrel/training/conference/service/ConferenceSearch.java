@@ -0,0 +1,255 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.service.SearchIndexStore.Posting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Full-text search over the names and descriptions of Conferences.
+ *
+ * Names and descriptions are split into lower case terms, and an inverted index in a
+ * SearchIndexStore maps each term to the Conferences it occurs in. Conferences matching more
+ * of the search terms rank first, then those where the terms occur more often, a term in the
+ * name counting NAME_WEIGHT times. Only the best MAX_RESULTS are kept in a heap while scoring,
+ * and pages are cut from them with an offset as the cursor.
+ */
+public class ConferenceSearch {
+
+    /**
+     * How many times a term in the name counts compared to one in the description.
+     */
+    static final int NAME_WEIGHT = 3;
+
+    /**
+     * The most postings read per search term.
+     */
+    static final int MAX_POSTINGS_PER_TERM = 1000;
+
+    /**
+     * The most results a search pages through.
+     */
+    public static final int MAX_RESULTS = 1000;
+
+    /**
+     * Longer terms are cut to this length, to stay within the limits of key names.
+     */
+    static final int MAX_TERM_LENGTH = 64;
+
+    static final int MAX_SEARCH_TERMS = 10;
+
+    private static final Set<String> STOP_WORDS = ImmutableSet.of("a", "an", "and", "are",
+            "as", "at", "be", "by", "for", "from", "in", "is", "it", "of", "on", "or", "the",
+            "to", "with");
+
+    private static volatile SearchIndexStore store = new DatastoreSearchIndexStore();
+
+    private ConferenceSearch() {}
+
+    /**
+     * A page of search results.
+     */
+    public static class Page {
+
+        private final List<String> websafeKeys;
+
+        private final String nextCursor;
+
+        Page(List<String> websafeKeys, String nextCursor) {
+            this.websafeKeys = websafeKeys;
+            this.nextCursor = nextCursor;
+        }
+
+        /**
+         * @return the websafe keys of the matching Conferences, best first.
+         */
+        public List<String> getWebsafeKeys() {
+            return websafeKeys;
+        }
+
+        /**
+         * @return the cursor of the next page, or null when there are no more results.
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * A Conference with its score for a search.
+     */
+    private static class Hit {
+
+        private final String documentId;
+
+        private int matchedTerms;
+
+        private int frequency;
+
+        private Hit(String documentId) {
+            this.documentId = documentId;
+        }
+    }
+
+    private static final Comparator<Hit> WORST_FIRST = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit hit1, Hit hit2) {
+            int compare = Integer.compare(hit1.matchedTerms, hit2.matchedTerms);
+            if (compare == 0) {
+                compare = Integer.compare(hit1.frequency, hit2.frequency);
+            }
+            // The same order for ties on every page
+            return compare != 0 ? compare : hit2.documentId.compareTo(hit1.documentId);
+        }
+    };
+
+    /**
+     * Replaces the store of the index, for tests.
+     *
+     * @param searchIndexStore the new store.
+     */
+    public static void setStore(final SearchIndexStore searchIndexStore) {
+        store = searchIndexStore;
+    }
+
+    /**
+     * Adds a new Conference to the index. Call it in the transaction that saves the Conference.
+     *
+     * @param conference the Conference.
+     */
+    public static void index(final Conference conference) {
+        store.add(conference.getWebsafeKey(), getTermFrequencies(conference));
+    }
+
+    /**
+     * Replaces the terms of a Conference that may be in the index already.
+     *
+     * @param conference the Conference.
+     */
+    public static void reindex(final Conference conference) {
+        store.remove(conference.getWebsafeKey());
+        index(conference);
+    }
+
+    /**
+     * Finds the Conferences matching any of the terms of a search, best first.
+     *
+     * @param query the search, as words.
+     * @param cursor the cursor returned with the previous page, null for the first page.
+     * @param pageSize the largest number of results.
+     * @return a page of results.
+     * @throws IllegalArgumentException when the cursor is malformed.
+     */
+    public static Page search(final String query, final String cursor, final int pageSize) {
+        int offset = parseCursor(cursor);
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.size() > MAX_SEARCH_TERMS) {
+            terms = terms.subList(0, MAX_SEARCH_TERMS);
+        }
+        int limit = Math.min(offset + pageSize, MAX_RESULTS);
+        if (terms.isEmpty() || offset >= limit) {
+            return new Page(Collections.<String>emptyList(), null);
+        }
+
+        Map<String, Hit> hits = new HashMap<>();
+        for (String term : terms) {
+            for (Posting posting : store.getPostings(term, MAX_POSTINGS_PER_TERM)) {
+                Hit hit = hits.get(posting.getDocumentId());
+                if (hit == null) {
+                    hit = new Hit(posting.getDocumentId());
+                    hits.put(posting.getDocumentId(), hit);
+                }
+                hit.matchedTerms++;
+                hit.frequency += posting.getFrequency();
+            }
+        }
+
+        // The best limit hits, with the worst of them on top to make room for better ones
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        for (Hit hit : hits.values()) {
+            best.add(hit);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<String> websafeKeys = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            websafeKeys.add(best.poll().documentId);
+        }
+        Collections.reverse(websafeKeys);
+        boolean more = hits.size() > limit && limit < MAX_RESULTS;
+        return new Page(offset < websafeKeys.size()
+                ? websafeKeys.subList(offset, websafeKeys.size())
+                : Collections.<String>emptyList(), more ? String.valueOf(limit) : null);
+    }
+
+    /**
+     * Counts the terms of the name and description of a Conference.
+     */
+    static Map<String, Integer> getTermFrequencies(final Conference conference) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        addTerms(frequencies, conference.getName(), NAME_WEIGHT);
+        addTerms(frequencies, conference.getDescription(), 1);
+        return frequencies;
+    }
+
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : tokenize(text)) {
+            Integer frequency = frequencies.get(term);
+            frequencies.put(term, (frequency == null ? 0 : frequency) + weight);
+        }
+    }
+
+    /**
+     * Splits text into lower case terms at anything but letters and digits. Stop words and
+     * single characters are left out.
+     */
+    static List<String> tokenize(final String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean inTerm = i < lowerCase.length()
+                    && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                String term = lowerCase.substring(start, Math.min(i, start + MAX_TERM_LENGTH));
+                if (term.length() > 1 && !STOP_WORDS.contains(term)) {
+                    terms.add(term);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static int parseCursor(final String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(cursor);
+            if (offset >= 0) {
+                return offset;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+}
@@ -0,0 +1,125 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Index;
+import com.google.appengine.api.datastore.PropertyProjection;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.common.collect.ImmutableMap;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Filter;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Operator;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.QueryPlan;
+import com.googlecode.objectify.Objectify;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs Conference queries as projection queries, reading only the properties that conference
+ * lists show from the indexes instead of loading whole entities.
+ */
+public class ConferenceSummaries {
+
+    /**
+     * The properties of a ConferenceSummary and the residual filters, with their types.
+     */
+    private static final Map<String, Class<?>> PROJECTIONS = ImmutableMap.<String, Class<?>>builder()
+            .put("name", String.class)
+            .put("city", String.class)
+            .put("startDate", Date.class)
+            .put("endDate", Date.class)
+            .put("month", Long.class)
+            .put("maxAttendees", Long.class)
+            .put("seatsAvailable", Long.class)
+            .build();
+
+    private ConferenceSummaries() {}
+
+    /**
+     * Returns whether the query can run as a projection query.
+     *
+     * A projection of the multi-valued topics would return a row per topic, so queries that
+     * filter topics in memory load whole Conferences instead.
+     *
+     * @param queryPlan the plan of the query.
+     * @return true when project can run the query.
+     */
+    public static boolean canProject(final QueryPlan queryPlan) {
+        for (Filter filter : queryPlan.getResidualFilters()) {
+            if (filter.getField() == Field.TOPIC) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the query as a projection query.
+     *
+     * The Conferences returned only hold their key and the projected properties, enough for a
+     * ConferenceSummary and for the residual filters of the plan. They are never saved or put
+     * in the session cache.
+     *
+     * @param queryPlan the plan of the query, see canProject.
+     * @param fetchOptions the limit or chunk size, and the cursor to start at.
+     * @return the partially loaded Conferences.
+     */
+    public static QueryResultIterator<Conference> project(final QueryPlan queryPlan,
+                                                          final FetchOptions fetchOptions) {
+        // A property that has an equality filter can't be projected, but its value is known
+        final Map<String, Object> equalityValues = new HashMap<>();
+        for (Filter filter : queryPlan.getPushedDownFilters()) {
+            if (filter.getOperator() == Operator.EQ && filter.getField() != Field.TOPIC) {
+                equalityValues.put(filter.getPropertyName(), filter.getTypedValue());
+            }
+        }
+        Query query = queryPlan.getDatastoreQuery();
+        for (Map.Entry<String, Class<?>> projection : PROJECTIONS.entrySet()) {
+            if (!equalityValues.containsKey(projection.getKey())) {
+                query.addProjection(new PropertyProjection(projection.getKey(),
+                        projection.getValue()));
+            }
+        }
+        final QueryResultIterator<Entity> entities = DatastoreServiceFactory.getDatastoreService()
+                .prepare(query).asQueryResultIterator(fetchOptions);
+        // A session of its own, so that partial Conferences never reach the request's session
+        final Objectify objectify = OfyService.factory().begin();
+        return new QueryResultIterator<Conference>() {
+            @Override
+            public boolean hasNext() {
+                return entities.hasNext();
+            }
+
+            @Override
+            public Conference next() {
+                Entity entity = entities.next();
+                for (Map.Entry<String, Object> equalityValue : equalityValues.entrySet()) {
+                    entity.setProperty(equalityValue.getKey(), equalityValue.getValue());
+                }
+                return objectify.load().fromEntity(entity);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public List<Index> getIndexList() {
+                return entities.getIndexList();
+            }
+
+            @Override
+            public Cursor getCursor() {
+                return entities.getCursor();
+            }
+        };
+    }
+}
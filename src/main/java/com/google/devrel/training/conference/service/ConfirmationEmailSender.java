@@ -0,0 +1,163 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskHandle;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.api.utils.SystemProperty;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Sends the confirmation e-mails for newly created Conferences in batches.
+ *
+ * createConference adds a task per e-mail to the "email" pull queue. A cron leases the tasks a
+ * batch at a time and sends the whole batch over one mail Session and Transport.
+ */
+public class ConfirmationEmailSender {
+
+    private static final Logger LOG = Logger.getLogger(ConfirmationEmailSender.class.getName());
+
+    private static final String QUEUE_NAME = "email";
+
+    /**
+     * The maximum number of e-mails leased and sent together.
+     */
+    public static final int BATCH_SIZE = 100;
+
+    /**
+     * How long a batch may take before its tasks can be leased again.
+     */
+    private static final long LEASE_SECONDS = 60;
+
+    /**
+     * Failed e-mails are retried with later batches until they have been leased this often.
+     */
+    private static final int MAX_RETRIES = 5;
+
+    private static final Session SESSION = Session.getDefaultInstance(new Properties(), null);
+
+    private ConfirmationEmailSender() {}
+
+    public static Queue getQueue() {
+        return QueueFactory.getQueue(QUEUE_NAME);
+    }
+
+    /**
+     * Returns a pull task for sending a confirmation e-mail.
+     *
+     * @param email the organizer's e-mail address.
+     * @param conferenceInfo the description of the Conference.
+     * @return the task to add to the queue returned by getQueue().
+     */
+    public static TaskOptions createTask(String email, String conferenceInfo) {
+        return TaskOptions.Builder.withMethod(TaskOptions.Method.PULL)
+                .param("email", email)
+                .param("conferenceInfo", conferenceInfo);
+    }
+
+    /**
+     * Leases a batch of tasks and sends their e-mails.
+     *
+     * Tasks whose e-mail was sent, or can never be sent, are deleted. The others are left to
+     * be leased again once their lease expires.
+     *
+     * @return the number of tasks leased, 0 when the queue is empty.
+     */
+    public static int sendBatch() {
+        Queue queue = getQueue();
+        List<TaskHandle> tasks = queue.leaseTasks(LEASE_SECONDS, TimeUnit.SECONDS, BATCH_SIZE);
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+        List<TaskHandle> done = new ArrayList<>(tasks.size());
+        Transport transport = null;
+        try {
+            InternetAddress from = new InternetAddress(
+                    String.format("noreply@%s.appspotmail.com",
+                            SystemProperty.applicationId.get()), "Conference Central");
+            // The same transport carries the whole batch.
+            transport = SESSION.getTransport(from);
+            transport.connect();
+            for (TaskHandle task : tasks) {
+                if (send(transport, from, task)) {
+                    done.add(task);
+                }
+            }
+        } catch (MessagingException | UnsupportedEncodingException e) {
+            // Nothing more can be sent with this transport, the rest is retried later.
+            LOG.log(Level.WARNING, "Failed to send a batch of e-mails", e);
+        } finally {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    LOG.log(Level.WARNING, "Failed to close the mail transport", e);
+                }
+            }
+        }
+        if (!done.isEmpty()) {
+            queue.deleteTask(done);
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Sends the e-mail of a single task.
+     *
+     * @return true when the task is done with, false when it should be retried.
+     */
+    private static boolean send(Transport transport, InternetAddress from, TaskHandle task) {
+        String email = null;
+        String conferenceInfo = null;
+        try {
+            for (Map.Entry<String, String> param : task.extractParams()) {
+                if ("email".equals(param.getKey())) {
+                    email = param.getValue();
+                } else if ("conferenceInfo".equals(param.getKey())) {
+                    conferenceInfo = param.getValue();
+                }
+            }
+        } catch (UnsupportedEncodingException | UnsupportedOperationException e) {
+            LOG.log(Level.SEVERE, "Dropping malformed e-mail task " + task.getName(), e);
+            return true;
+        }
+        String body = "Hi, you have created a following conference.\n" + conferenceInfo;
+        try {
+            Message message = new MimeMessage(SESSION);
+            message.setFrom(from);
+            message.addRecipient(Message.RecipientType.TO, new InternetAddress(email, ""));
+            message.setSubject("You created a new Conference!");
+            message.setText(body);
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+            return true;
+        } catch (AddressException | UnsupportedEncodingException e) {
+            // Retrying won't help.
+            LOG.log(Level.SEVERE, String.format("Dropping a mail to %s", email), e);
+            return true;
+        } catch (MessagingException e) {
+            if (task.getRetryCount() >= MAX_RETRIES) {
+                LOG.log(Level.SEVERE, String.format("Giving up a mail to %s", email), e);
+                return true;
+            }
+            LOG.log(Level.WARNING, String.format("Failed to send a mail to %s", email), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.TermPosting;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the search index in TermPosting entities, children of their Conferences.
+ *
+ * Called in the transaction that saves a Conference, the postings are written with it.
+ */
+public class DatastoreSearchIndexStore implements SearchIndexStore {
+
+    @Override
+    public void add(final String documentId, final Map<String, Integer> termFrequencies) {
+        Key<Conference> conferenceKey = Key.create(documentId);
+        List<TermPosting> postings = new ArrayList<>(termFrequencies.size());
+        for (Map.Entry<String, Integer> termFrequency : termFrequencies.entrySet()) {
+            postings.add(new TermPosting(conferenceKey, termFrequency.getKey(),
+                    termFrequency.getValue()));
+        }
+        ofy().save().entities(postings).now();
+    }
+
+    @Override
+    public void remove(final String documentId) {
+        Key<Conference> conferenceKey = Key.create(documentId);
+        ofy().delete().keys(ofy().load().type(TermPosting.class).ancestor(conferenceKey)
+                .keys().list()).now();
+    }
+
+    @Override
+    public List<Posting> getPostings(final String term, final int limit) {
+        List<Posting> postings = new ArrayList<>();
+        for (TermPosting posting : ofy().load().type(TermPosting.class).filter("term", term)
+                .order("-frequency").limit(limit)) {
+            postings.add(new Posting(posting.getConferenceKey().getString(),
+                    posting.getFrequency()));
+        }
+        return postings;
+    }
+}
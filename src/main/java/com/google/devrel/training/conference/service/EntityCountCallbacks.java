@@ -0,0 +1,43 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.datastore.DeleteContext;
+import com.google.appengine.api.datastore.PostDelete;
+import com.google.appengine.api.datastore.PostLoad;
+import com.google.appengine.api.datastore.PostLoadContext;
+import com.google.appengine.api.datastore.PostPut;
+import com.google.appengine.api.datastore.PutContext;
+
+/**
+ * Datastore callbacks that count the entities each endpoint call reads, writes and deletes.
+ *
+ * The callbacks run once per entity, for every kind. They are registered in
+ * META-INF/datastorecallbacks.xml, which the SDK's annotation processor generates at compile
+ * time. Keys-only query results count as reads. Entities served from Objectify's global cache
+ * never reach the datastore and are not counted.
+ */
+public class EntityCountCallbacks {
+
+    @PostLoad
+    public void countRead(PostLoadContext context) {
+        ApiMetrics.Call call = ApiMetrics.currentCall();
+        if (call != null) {
+            call.entitiesRead(1);
+        }
+    }
+
+    @PostPut
+    public void countWritten(PutContext context) {
+        ApiMetrics.Call call = ApiMetrics.currentCall();
+        if (call != null) {
+            call.entitiesWritten(1);
+        }
+    }
+
+    @PostDelete
+    public void countDeleted(DeleteContext context) {
+        ApiMetrics.Call call = ApiMetrics.currentCall();
+        if (call != null) {
+            call.entitiesDeleted(1);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.FacetShard;
+import com.google.devrel.training.conference.domain.Facets;
+import com.google.devrel.training.conference.domain.Facets.FacetCount;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+import com.googlecode.objectify.cmd.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Sharded counters of Conferences and seats per city, topic and start month.
+ *
+ * New Conferences are added to a randomly chosen FacetShard, in the transaction that saves
+ * them. Reading the facets takes one batch get of all the shards, and the merged counts are
+ * cached in memcache for a short while. A daily reconciliation recounts the Conferences and
+ * repairs counts that drifted.
+ */
+public class FacetCounter {
+
+    private static final Logger LOG = Logger.getLogger(FacetCounter.class.getName());
+
+    /**
+     * Number of shards. Within the 25 entity groups of a cross-group transaction, so that the
+     * reconciliation can rewrite all of them at once.
+     */
+    public static final int NUM_SHARDS = 20;
+
+    private static final String CITY = "city:";
+
+    private static final String TOPIC = "topic:";
+
+    private static final String MONTH = "month:";
+
+    private static final String MEMCACHE_KEY = "FACETS";
+
+    private static final int MEMCACHE_EXPIRATION_SECONDS = 60;
+
+    private static final int RECONCILE_CHUNK_SIZE = 500;
+
+    private static final Random RANDOM = new Random();
+
+    private static final Comparator<FacetCount> MOST_CONFERENCES_FIRST =
+            new Comparator<FacetCount>() {
+                @Override
+                public int compare(FacetCount count1, FacetCount count2) {
+                    int compare = Long.compare(count2.getConferences(), count1.getConferences());
+                    return compare != 0 ? compare
+                            : count1.getValue().compareTo(count2.getValue());
+                }
+            };
+
+    private FacetCounter() {}
+
+    /**
+     * Returns the keys of all the shards, in index order.
+     */
+    static List<Key<FacetShard>> getShardKeys() {
+        List<Key<FacetShard>> shardKeys = new ArrayList<>(NUM_SHARDS);
+        for (int i = 0; i < NUM_SHARDS; i++) {
+            shardKeys.add(FacetShard.createKey(i));
+        }
+        return shardKeys;
+    }
+
+    /**
+     * Counts new Conferences in a randomly chosen shard. Call it in the transaction that saves
+     * the Conferences, so that they are counted exactly once.
+     *
+     * @param conferences the new Conferences.
+     */
+    public static void conferencesAdded(final Collection<Conference> conferences) {
+        int index = RANDOM.nextInt(NUM_SHARDS);
+        FacetShard shard = ofy().load().key(FacetShard.createKey(index)).now();
+        if (shard == null) {
+            shard = new FacetShard(index);
+        }
+        Map<String, long[]> counts = new HashMap<>();
+        for (Conference conference : conferences) {
+            count(counts, conference);
+        }
+        for (Map.Entry<String, long[]> count : counts.entrySet()) {
+            shard.add(count.getKey(), count.getValue()[0], count.getValue()[1]);
+        }
+        ofy().save().entity(shard).now();
+    }
+
+    /**
+     * Returns the counts, from memcache or else from all the shards.
+     *
+     * @return the counts per city, topic and start month.
+     */
+    public static Facets getFacets() {
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        Facets facets = (Facets) memcacheService.get(MEMCACHE_KEY);
+        if (facets != null) {
+            return facets;
+        }
+        facets = readShards();
+        memcacheService.put(MEMCACHE_KEY, facets,
+                Expiration.byDeltaSeconds(MEMCACHE_EXPIRATION_SECONDS));
+        return facets;
+    }
+
+    /**
+     * Returns the counts summed from all the shards, skipping the copy in memcache, which can
+     * be up to a minute old.
+     *
+     * @return the counts per city, topic and start month.
+     */
+    public static Facets readShards() {
+        Map<String, long[]> total = new HashMap<>();
+        for (FacetShard shard : ofy().load().keys(getShardKeys()).values()) {
+            for (int i = 0; i < shard.getFacetValues().size(); i++) {
+                add(total, shard.getFacetValues().get(i), shard.getConferences().get(i),
+                        shard.getSeats().get(i));
+            }
+        }
+        List<FacetCount> cities = new ArrayList<>();
+        List<FacetCount> topics = new ArrayList<>();
+        List<FacetCount> months = new ArrayList<>();
+        for (Map.Entry<String, long[]> count : total.entrySet()) {
+            String facetValue = count.getKey();
+            if (count.getValue()[0] <= 0) {
+                // Drifted below zero, until the next reconciliation
+                continue;
+            }
+            List<FacetCount> counts = facetValue.startsWith(CITY) ? cities
+                    : facetValue.startsWith(TOPIC) ? topics : months;
+            counts.add(new FacetCount(facetValue.substring(facetValue.indexOf(':') + 1),
+                    count.getValue()[0], count.getValue()[1]));
+        }
+        Collections.sort(cities, MOST_CONFERENCES_FIRST);
+        Collections.sort(topics, MOST_CONFERENCES_FIRST);
+        Collections.sort(months, MOST_CONFERENCES_FIRST);
+        return new Facets(cities, topics, months);
+    }
+
+    /**
+     * Recounts all the Conferences and replaces the counts of the shards with the result.
+     *
+     * Conferences created while the Conference kind is being read may be counted once too few
+     * or too many until the next reconciliation.
+     */
+    public static void reconcile() {
+        final Map<String, long[]> total = new HashMap<>();
+        int conferences = 0;
+        Cursor cursor = null;
+        while (true) {
+            Query<Conference> query = ofy().load().type(Conference.class).hybrid(false)
+                    .limit(RECONCILE_CHUNK_SIZE);
+            if (cursor != null) {
+                query = query.startAt(cursor);
+            }
+            QueryResultIterator<Conference> iterator = query.iterator();
+            int chunkSize = 0;
+            while (iterator.hasNext()) {
+                count(total, iterator.next());
+                chunkSize++;
+            }
+            conferences += chunkSize;
+            ofy().clear();
+            if (chunkSize < RECONCILE_CHUNK_SIZE) {
+                break;
+            }
+            cursor = iterator.getCursor();
+        }
+
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                List<FacetShard> shards = new ArrayList<>(NUM_SHARDS);
+                for (int i = 0; i < NUM_SHARDS; i++) {
+                    FacetShard shard = new FacetShard(i);
+                    if (i == 0) {
+                        for (Map.Entry<String, long[]> count : total.entrySet()) {
+                            shard.add(count.getKey(), count.getValue()[0],
+                                    count.getValue()[1]);
+                        }
+                    }
+                    shards.add(shard);
+                }
+                // Read the shards so that a concurrent increment makes one of us retry
+                ofy().load().keys(getShardKeys());
+                ofy().save().entities(shards).now();
+            }
+        });
+        MemcacheServiceFactory.getMemcacheService().delete(MEMCACHE_KEY);
+        LOG.info(String.format("Reconciled the facets of %d conferences", conferences));
+    }
+
+    /**
+     * Adds a Conference to counts by facet value. The counts are the number of Conferences
+     * followed by the number of seats.
+     */
+    private static void count(Map<String, long[]> counts, Conference conference) {
+        long seats = conference.getMaxAttendees();
+        if (conference.getCity() != null) {
+            add(counts, CITY + conference.getCity(), 1, seats);
+        }
+        if (conference.getTopics() != null) {
+            for (String topic : conference.getTopics()) {
+                add(counts, TOPIC + topic, 1, seats);
+            }
+        }
+        if (conference.getMonth() > 0) {
+            add(counts, MONTH + conference.getMonth(), 1, seats);
+        }
+    }
+
+    private static void add(Map<String, long[]> counts, String facetValue, long conferences,
+                            long seats) {
+        long[] count = counts.get(facetValue);
+        if (count == null) {
+            count = new long[2];
+            counts.put(facetValue, count);
+        }
+        count[0] += conferences;
+        count[1] += seats;
+    }
+}
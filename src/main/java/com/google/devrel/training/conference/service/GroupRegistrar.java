@@ -0,0 +1,228 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.GroupBooking;
+import com.google.devrel.training.conference.domain.GroupRegistration.Status;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registers groups of users for a Conference.
+ *
+ * The seats of the whole group are booked from the seat shards in one transaction, which also
+ * saves a GroupBooking listing the users. A task then adds the Conference to the users'
+ * Profiles a batch at a time. Registering the same users again is harmless: users who are
+ * registered or pending in a GroupBooking are reported as already registered.
+ */
+public class GroupRegistrar {
+
+    /**
+     * The largest group registered in one request.
+     */
+    public static final int MAX_GROUP_SIZE = 200;
+
+    /**
+     * Profiles updated per transaction. With the GroupBooking and a seat shard, a transaction
+     * stays within the 25 entity groups of a cross-group transaction.
+     */
+    static final int PROFILES_PER_TRANSACTION = 23;
+
+    private GroupRegistrar() {}
+
+    /**
+     * Books seats for a group of users and schedules the update of their Profiles.
+     *
+     * @param conference the Conference.
+     * @param userIds the users to register. Repeated users are registered once.
+     * @return the outcome by user ID, in the order of userIds.
+     */
+    public static Map<String, Status> register(final Conference conference,
+                                               final Collection<String> userIds) {
+        final Key<Conference> conferenceKey = conference.getKey();
+        final Map<String, Status> statuses = new LinkedHashMap<>();
+        final List<String> candidates = new ArrayList<>();
+        Map<Key<Profile>, Profile> profiles = ofy().load().keys(getProfileKeys(
+                new LinkedHashSet<>(userIds)));
+        for (String userId : userIds) {
+            if (statuses.containsKey(userId)) {
+                continue;
+            }
+            Profile profile = profiles.get(Key.create(Profile.class, userId));
+            if (profile == null) {
+                statuses.put(userId, Status.NO_PROFILE);
+            } else if (profile.isRegisteredFor(conferenceKey)) {
+                statuses.put(userId, Status.ALREADY_REGISTERED);
+            } else {
+                // Decided in the transaction
+                statuses.put(userId, null);
+                candidates.add(userId);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return statuses;
+        }
+        SeatCounter.ensureShards(conferenceKey);
+
+        Map<String, Status> booked = ofy().transact(new Work<Map<String, Status>>() {
+            @Override
+            public Map<String, Status> run() {
+                Map<String, Status> booked = new LinkedHashMap<>();
+                // Reading the pending bookings puts concurrent group registrations in conflict
+                Set<String> pendingUserIds = new HashSet<>();
+                for (GroupBooking booking : ofy().load().type(GroupBooking.class)
+                        .ancestor(conferenceKey)) {
+                    pendingUserIds.addAll(booking.getPendingUserIds());
+                }
+                List<String> toBook = new ArrayList<>(candidates.size());
+                for (String userId : candidates) {
+                    if (pendingUserIds.contains(userId)) {
+                        booked.put(userId, Status.ALREADY_REGISTERED);
+                    } else {
+                        toBook.add(userId);
+                    }
+                }
+
+                List<SeatShard> changedShards = new ArrayList<>();
+                int seatsBooked = 0;
+                for (SeatShard shard : ofy().load().keys(
+                        SeatCounter.getShardKeys(conferenceKey)).values()) {
+                    int seats = Math.min(shard.getSeatsAvailable(), toBook.size() - seatsBooked);
+                    if (seats > 0) {
+                        shard.bookSeats(seats);
+                        changedShards.add(shard);
+                        seatsBooked += seats;
+                    }
+                }
+                // First come, first served
+                for (int i = 0; i < toBook.size(); i++) {
+                    booked.put(toBook.get(i),
+                            i < seatsBooked ? Status.REGISTERED : Status.NO_SEATS_AVAILABLE);
+                }
+                if (seatsBooked > 0) {
+                    ofy().save().entities(changedShards).now();
+                    ofy().save().entity(new GroupBooking(conferenceKey,
+                            toBook.subList(0, seatsBooked))).now();
+                    QueueFactory.getDefaultQueue().add(ofy().getTransaction(),
+                            createTask(conferenceKey));
+                }
+                return booked;
+            }
+        });
+        statuses.putAll(booked);
+
+        int seatsBooked = 0;
+        for (Status status : booked.values()) {
+            if (status == Status.REGISTERED) {
+                seatsBooked++;
+            }
+        }
+        if (seatsBooked > 0) {
+            SeatCounter.seatsChanged(conference, -seatsBooked);
+        }
+        return statuses;
+    }
+
+    /**
+     * Adds the Conference to the Profiles of the users in its pending GroupBookings.
+     *
+     * Users who registered on their own in the meantime, or lost their Profile, give their
+     * seat back. Each batch of Profiles is updated together with the GroupBooking, so a failed
+     * run can be repeated.
+     *
+     * @param conferenceKey the key of the Conference.
+     */
+    public static void applyPendingBookings(final Key<Conference> conferenceKey) {
+        List<Key<GroupBooking>> bookingKeys = ofy().load().type(GroupBooking.class)
+                .ancestor(conferenceKey).keys().list();
+        int seatsReleased = 0;
+        for (final Key<GroupBooking> bookingKey : bookingKeys) {
+            while (true) {
+                Integer released = ofy().transact(new Work<Integer>() {
+                    @Override
+                    public Integer run() {
+                        return applyBatch(bookingKey);
+                    }
+                });
+                if (released == null) {
+                    break;
+                }
+                seatsReleased += released;
+            }
+        }
+        if (seatsReleased > 0) {
+            Conference conference = ofy().load().key(conferenceKey).now();
+            if (conference != null) {
+                SeatCounter.seatsChanged(conference, seatsReleased);
+            }
+        }
+    }
+
+    /**
+     * Updates the next batch of Profiles of a GroupBooking, in a transaction.
+     *
+     * @return the number of seats given back, or null when the GroupBooking is done.
+     */
+    private static Integer applyBatch(final Key<GroupBooking> bookingKey) {
+        GroupBooking booking = ofy().load().key(bookingKey).now();
+        if (booking == null) {
+            return null;
+        }
+        Key<Conference> conferenceKey = booking.getConferenceKey();
+        List<String> batch = new ArrayList<>(booking.getPendingUserIds().subList(0,
+                Math.min(PROFILES_PER_TRANSACTION, booking.getPendingUserIds().size())));
+        Map<Key<Profile>, Profile> profiles = ofy().load().keys(getProfileKeys(batch));
+        List<Profile> changedProfiles = new ArrayList<>(batch.size());
+        int released = 0;
+        for (String userId : batch) {
+            Profile profile = profiles.get(Key.create(Profile.class, userId));
+            if (profile == null || profile.isRegisteredFor(conferenceKey)) {
+                released++;
+            } else {
+                profile.addToConferencesToAttend(conferenceKey);
+                changedProfiles.add(profile);
+            }
+        }
+        if (released > 0) {
+            SeatShard shard = ofy().load().key(SeatCounter.getRandomShardKey(conferenceKey))
+                    .now();
+            shard.giveBackSeats(released);
+            ofy().save().entity(shard).now();
+        }
+        booking.applied(batch);
+        if (booking.isDone()) {
+            ofy().delete().entity(booking).now();
+        } else {
+            ofy().save().entity(booking).now();
+        }
+        ofy().save().entities(changedProfiles).now();
+        return released;
+    }
+
+    private static TaskOptions createTask(final Key<Conference> conferenceKey) {
+        return TaskOptions.Builder.withUrl("/tasks/apply_group_bookings")
+                .param("websafeConferenceKey", conferenceKey.getString());
+    }
+
+    private static List<Key<Profile>> getProfileKeys(final Collection<String> userIds) {
+        List<Key<Profile>> profileKeys = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            profileKeys.add(Key.create(Profile.class, userId));
+        }
+        return profileKeys;
+    }
+}
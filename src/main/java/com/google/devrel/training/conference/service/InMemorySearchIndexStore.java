@@ -0,0 +1,75 @@
+package com.google.devrel.training.conference.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the search index in memory, as a stand-in for DatastoreSearchIndexStore in tests and
+ * local experiments. Nothing is shared between instances of the application.
+ */
+public class InMemorySearchIndexStore implements SearchIndexStore {
+
+    private static final Comparator<Posting> HIGHEST_FREQUENCY_FIRST = new Comparator<Posting>() {
+        @Override
+        public int compare(Posting posting1, Posting posting2) {
+            return Integer.compare(posting2.getFrequency(), posting1.getFrequency());
+        }
+    };
+
+    /**
+     * The frequency by document, by term.
+     */
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+
+    /**
+     * The terms by document, for removing documents.
+     */
+    private final Map<String, List<String>> documentTerms = new HashMap<>();
+
+    @Override
+    public synchronized void add(final String documentId,
+                                 final Map<String, Integer> termFrequencies) {
+        for (Map.Entry<String, Integer> termFrequency : termFrequencies.entrySet()) {
+            Map<String, Integer> frequencies = postings.get(termFrequency.getKey());
+            if (frequencies == null) {
+                frequencies = new HashMap<>();
+                postings.put(termFrequency.getKey(), frequencies);
+            }
+            frequencies.put(documentId, termFrequency.getValue());
+        }
+        documentTerms.put(documentId, new ArrayList<>(termFrequencies.keySet()));
+    }
+
+    @Override
+    public synchronized void remove(final String documentId) {
+        List<String> terms = documentTerms.remove(documentId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<String, Integer> frequencies = postings.get(term);
+            frequencies.remove(documentId);
+            if (frequencies.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<Posting> getPostings(final String term, final int limit) {
+        Map<String, Integer> frequencies = postings.get(term);
+        if (frequencies == null) {
+            return Collections.emptyList();
+        }
+        List<Posting> result = new ArrayList<>(frequencies.size());
+        for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+            result.add(new Posting(frequency.getKey(), frequency.getValue()));
+        }
+        Collections.sort(result, HIGHEST_FREQUENCY_FIRST);
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+}
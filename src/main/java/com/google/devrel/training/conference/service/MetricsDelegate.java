@@ -0,0 +1,153 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.memcache.MemcacheServicePb.MemcacheGetRequest;
+import com.google.appengine.api.memcache.MemcacheServicePb.MemcacheGetResponse;
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.util.concurrent.ForwardingFuture;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An API proxy delegate that counts the API calls of endpoint requests into their
+ * ApiMetrics.Call, and passes everything on to the delegate it wraps.
+ *
+ * Counts datastore RPCs, commits that fail on contention, and the keys found and missed by
+ * memcache gets, which include the lookups of Objectify's global cache.
+ */
+class MetricsDelegate implements ApiProxy.Delegate<ApiProxy.Environment> {
+
+    private static final String DATASTORE_PACKAGE = "datastore_v3";
+
+    private static final String MEMCACHE_PACKAGE = "memcache";
+
+    /**
+     * The datastore's CONCURRENT_TRANSACTION error code.
+     */
+    static final int CONCURRENT_TRANSACTION = 2;
+
+    private final ApiProxy.Delegate<ApiProxy.Environment> delegate;
+
+    MetricsDelegate(ApiProxy.Delegate<ApiProxy.Environment> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] makeSyncCall(ApiProxy.Environment environment, String packageName,
+                               String methodName, byte[] request) {
+        ApiMetrics.Call call = ApiMetrics.getCall(environment);
+        if (call == null) {
+            return delegate.makeSyncCall(environment, packageName, methodName, request);
+        }
+        started(call, packageName);
+        byte[] response;
+        try {
+            response = delegate.makeSyncCall(environment, packageName, methodName, request);
+        } catch (RuntimeException e) {
+            failed(call, packageName, methodName, e);
+            throw e;
+        }
+        succeeded(call, packageName, methodName, request, response);
+        return response;
+    }
+
+    @Override
+    public Future<byte[]> makeAsyncCall(ApiProxy.Environment environment,
+                                        final String packageName, final String methodName,
+                                        final byte[] request, ApiProxy.ApiConfig apiConfig) {
+        Future<byte[]> future = delegate.makeAsyncCall(environment, packageName, methodName,
+                request, apiConfig);
+        final ApiMetrics.Call call = ApiMetrics.getCall(environment);
+        if (call == null) {
+            return future;
+        }
+        started(call, packageName);
+        // The outcome is recorded by whoever waits for the response first.
+        return new ForwardingFuture.SimpleForwardingFuture<byte[]>(future) {
+            private final AtomicBoolean recorded = new AtomicBoolean();
+
+            @Override
+            public byte[] get() throws InterruptedException, ExecutionException {
+                try {
+                    return recordSuccess(super.get());
+                } catch (ExecutionException e) {
+                    throw recordFailure(e);
+                }
+            }
+
+            @Override
+            public byte[] get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                try {
+                    return recordSuccess(super.get(timeout, unit));
+                } catch (ExecutionException e) {
+                    throw recordFailure(e);
+                }
+            }
+
+            private byte[] recordSuccess(byte[] response) {
+                if (recorded.compareAndSet(false, true)) {
+                    succeeded(call, packageName, methodName, request, response);
+                }
+                return response;
+            }
+
+            private ExecutionException recordFailure(ExecutionException e) {
+                if (recorded.compareAndSet(false, true)) {
+                    failed(call, packageName, methodName, e.getCause());
+                }
+                return e;
+            }
+        };
+    }
+
+    private static void started(ApiMetrics.Call call, String packageName) {
+        if (DATASTORE_PACKAGE.equals(packageName)) {
+            call.datastoreRpc();
+        }
+    }
+
+    private static void succeeded(ApiMetrics.Call call, String packageName, String methodName,
+                                  byte[] request, byte[] response) {
+        if (!MEMCACHE_PACKAGE.equals(packageName) || !"Get".equals(methodName)) {
+            return;
+        }
+        try {
+            int keys = MemcacheGetRequest.parseFrom(request).getKeyCount();
+            int hits = MemcacheGetResponse.parseFrom(response).getItemCount();
+            call.memcacheGet(hits, keys - hits);
+        } catch (IOException e) {
+            // Not worth failing the call over.
+        }
+    }
+
+    private static void failed(ApiMetrics.Call call, String packageName, String methodName,
+                               Throwable cause) {
+        if (DATASTORE_PACKAGE.equals(packageName) && "Commit".equals(methodName)
+                && cause instanceof ApiProxy.ApplicationException
+                && ((ApiProxy.ApplicationException) cause).getApplicationError()
+                        == CONCURRENT_TRANSACTION) {
+            call.transactionRetry();
+        }
+    }
+
+    @Override
+    public void log(ApiProxy.Environment environment, ApiProxy.LogRecord record) {
+        delegate.log(environment, record);
+    }
+
+    @Override
+    public void flushLogs(ApiProxy.Environment environment) {
+        delegate.flushLogs(environment);
+    }
+
+    @Override
+    public List<Thread> getRequestThreads(ApiProxy.Environment environment) {
+        return delegate.getRequestThreads(environment);
+    }
+}
@@ -0,0 +1,131 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.IdentifiableValue;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.common.base.Joiner;
+import com.google.devrel.training.conference.domain.Conference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the set of nearly sold out Conferences, and the announcement built from it, up to date
+ * as seats are booked and given back.
+ *
+ * The set maps websafe Conference keys to names and lives in memcache, updated with
+ * compare-and-set. When memcache has evicted it, the next change rebuilds it from the
+ * datastore first. The announcement cron also reconciles it with the datastore now and then,
+ * which catches changes that gave up on compare-and-set.
+ */
+public class NearlySoldOutTracker {
+
+    private static final Logger LOG = Logger.getLogger(NearlySoldOutTracker.class.getName());
+
+    /**
+     * A Conference is nearly sold out with 1 - 5 seats left.
+     */
+    public static final int MIN_SEATS = 1;
+
+    public static final int MAX_SEATS = 5;
+
+    private static final String MEMCACHE_KEY = "NEARLY_SOLD_OUT_CONFERENCES";
+
+    private static final int MAX_CAS_RETRIES = 10;
+
+    private NearlySoldOutTracker() {}
+
+    public static boolean isNearlySoldOut(int seatsAvailable) {
+        return seatsAvailable >= MIN_SEATS && seatsAvailable <= MAX_SEATS;
+    }
+
+    /**
+     * Updates the set after the seats available for a Conference changed, and publishes a new
+     * announcement when the Conference entered or left the set.
+     *
+     * @param conference the Conference.
+     * @param seatsAvailable the number of seats now available.
+     */
+    @SuppressWarnings("unchecked")
+    public static void seatsChanged(Conference conference, int seatsAvailable) {
+        String websafeKey = conference.getWebsafeKey();
+        boolean nearlySoldOut = isNearlySoldOut(seatsAvailable);
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        for (int i = 0; i < MAX_CAS_RETRIES; i++) {
+            IdentifiableValue current = memcacheService.getIdentifiable(MEMCACHE_KEY);
+            // Starting from an empty set would drop the other Conferences from the announcement
+            HashMap<String, String> conferences = current == null
+                    ? loadFromDatastore()
+                    : new HashMap<>((Map<String, String>) current.getValue());
+            if (nearlySoldOut == conferences.containsKey(websafeKey)) {
+                // Didn't cross the band.
+                return;
+            }
+            if (nearlySoldOut) {
+                conferences.put(websafeKey, conference.getName());
+            } else {
+                conferences.remove(websafeKey);
+            }
+            boolean stored = current == null
+                    ? memcacheService.put(MEMCACHE_KEY, conferences, null,
+                            SetPolicy.ADD_ONLY_IF_NOT_PRESENT)
+                    : memcacheService.putIfUntouched(MEMCACHE_KEY, current, conferences);
+            if (stored) {
+                AnnouncementCache.publish(buildAnnouncement(conferences));
+                return;
+            }
+        }
+        LOG.warning("Gave up updating the nearly sold out conferences for " + websafeKey
+                + ", the announcement cron will catch up");
+    }
+
+    /**
+     * Replaces the set with the nearly sold out Conferences found in the datastore.
+     *
+     * @param conferences the websafe keys and names of the nearly sold out Conferences.
+     */
+    public static void reconcile(Map<String, String> conferences) {
+        MemcacheServiceFactory.getMemcacheService().put(MEMCACHE_KEY,
+                new HashMap<>(conferences));
+        AnnouncementCache.publish(buildAnnouncement(conferences));
+    }
+
+    /**
+     * Queries the datastore for the nearly sold out Conferences. The seats available stored on
+     * a Conference trail its seat shards by a rollup interval.
+     *
+     * @return the websafe keys and names of the nearly sold out Conferences.
+     */
+    public static HashMap<String, String> loadFromDatastore() {
+        HashMap<String, String> conferences = new HashMap<>();
+        for (Conference conference : ofy().load().type(Conference.class)
+                .filter("seatsAvailable <=", MAX_SEATS)
+                .filter("seatsAvailable >=", MIN_SEATS)) {
+            conferences.put(conference.getWebsafeKey(), conference.getName());
+        }
+        return conferences;
+    }
+
+    /**
+     * Builds the announcement for the given nearly sold out Conferences.
+     *
+     * @param conferences the websafe keys and names of the nearly sold out Conferences.
+     * @return the announcement, or null when there are no nearly sold out Conferences.
+     */
+    static String buildAnnouncement(Map<String, String> conferences) {
+        if (conferences.isEmpty()) {
+            return null;
+        }
+        List<String> conferenceNames = new ArrayList<>(conferences.values());
+        Collections.sort(conferenceNames);
+        return "Last chance to attend! The following conferences are nearly sold out: "
+                + Joiner.on(", ").skipNulls().join(conferenceNames);
+    }
+}
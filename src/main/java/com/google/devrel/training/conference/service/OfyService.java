@@ -1,7 +1,11 @@
 package com.google.devrel.training.conference.service;
 
 import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.FacetShard;
+import com.google.devrel.training.conference.domain.GroupBooking;
 import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.google.devrel.training.conference.domain.TermPosting;
 import com.googlecode.objectify.Objectify;
 import com.googlecode.objectify.ObjectifyFactory;
 import com.googlecode.objectify.ObjectifyService;
@@ -16,6 +20,10 @@ public class OfyService {
     static {
         factory().register(Profile.class);
         factory().register(Conference.class);
+        factory().register(SeatShard.class);
+        factory().register(GroupBooking.class);
+        factory().register(FacetShard.class);
+        factory().register(TermPosting.class);
     }
 
     /**
@@ -0,0 +1,54 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.googlecode.objectify.Key;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves organizer display names for a list of Conferences ahead of serialization.
+ *
+ * Conferences store their organizer's display name, so only those saved before it was stored
+ * need resolving. Without this, each of them loads its organizer's Profile on its own while
+ * Endpoints serializes getOrganizerDisplayName().
+ */
+public class OrganizerNameResolver {
+
+    private OrganizerNameResolver() {}
+
+    /**
+     * Loads the distinct organizer Profiles of the given Conferences without a stored display
+     * name in one batch, and hands the display names to the Conferences.
+     *
+     * @param conferences Conferences about to be returned from an API method.
+     * @return the same Conferences, for chaining.
+     */
+    public static <T extends Collection<Conference>> T resolve(T conferences) {
+        Set<Key<Profile>> profileKeys = new LinkedHashSet<>();
+        for (Conference conference : conferences) {
+            if (!conference.hasOrganizerDisplayName()) {
+                profileKeys.add(conference.getProfileKey());
+            }
+        }
+        if (profileKeys.isEmpty()) {
+            return conferences;
+        }
+        Map<Key<Profile>, Profile> organizers = ofy().load().keys(profileKeys);
+        for (Conference conference : conferences) {
+            if (conference.hasOrganizerDisplayName()) {
+                continue;
+            }
+            Profile organizer = organizers.get(conference.getProfileKey());
+            conference.setOrganizerDisplayName(
+                    organizer == null ? conference.getOrganizerUserId()
+                            : organizer.getDisplayName());
+        }
+        return conferences;
+    }
+}
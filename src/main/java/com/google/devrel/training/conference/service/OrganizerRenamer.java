@@ -0,0 +1,100 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.base.Objects;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+import com.googlecode.objectify.cmd.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies an organizer's new display name into the Conferences they organize.
+ *
+ * Renaming only saves the Profile and enqueues a task. The task walks the organizer's
+ * Conferences with an ancestor query, a batch at a time, each batch enqueuing a task for the
+ * next. Every batch reads the display name from the Profile in the transaction that updates
+ * the Conferences, which share the Profile's entity group, so the last rename wins even when
+ * renames overlap.
+ */
+public class OrganizerRenamer {
+
+    /**
+     * Conferences updated per transaction.
+     */
+    public static final int BATCH_SIZE = 100;
+
+    private OrganizerRenamer() {}
+
+    /**
+     * Schedules the update of the Conferences of an organizer who changed their display name.
+     * Call it in the transaction that saves the Profile, so that the task is added if and only
+     * if the new name is stored.
+     *
+     * @param userId the user ID of the organizer.
+     */
+    public static void renamed(final String userId) {
+        QueueFactory.getDefaultQueue().add(ofy().getTransaction(), createTask(userId, null));
+    }
+
+    /**
+     * Updates the next batch of Conferences of an organizer, and schedules the batch after it.
+     *
+     * @param userId the user ID of the organizer.
+     * @param cursor the websafe cursor of the batch, null for the first.
+     * @return the number of Conferences that changed.
+     */
+    public static int renameBatch(final String userId, final String cursor) {
+        final Key<Profile> profileKey = Key.create(Profile.class, userId);
+        Query<Conference> query = ofy().load().type(Conference.class).ancestor(profileKey)
+                .limit(BATCH_SIZE);
+        if (cursor != null) {
+            query = query.startAt(Cursor.fromWebSafeString(cursor));
+        }
+        QueryResultIterator<Key<Conference>> iterator = query.keys().iterator();
+        final List<Key<Conference>> conferenceKeys = new ArrayList<>(BATCH_SIZE);
+        while (iterator.hasNext()) {
+            conferenceKeys.add(iterator.next());
+        }
+        final List<Conference> changed = new ArrayList<>(conferenceKeys.size());
+        if (!conferenceKeys.isEmpty()) {
+            ofy().transact(new VoidWork() {
+                @Override
+                public void vrun() {
+                    changed.clear();
+                    Profile profile = ofy().load().key(profileKey).now();
+                    if (profile == null) {
+                        return;
+                    }
+                    for (Conference conference : ofy().load().keys(conferenceKeys).values()) {
+                        if (!conference.hasOrganizerDisplayName() || !Objects.equal(
+                                profile.getDisplayName(), conference.getOrganizerDisplayName())) {
+                            conference.setOrganizerDisplayName(profile.getDisplayName());
+                            changed.add(conference);
+                        }
+                    }
+                    ofy().save().entities(changed).now();
+                }
+            });
+        }
+        if (conferenceKeys.size() == BATCH_SIZE) {
+            QueueFactory.getDefaultQueue().add(createTask(userId,
+                    iterator.getCursor().toWebSafeString()));
+        }
+        return changed.size();
+    }
+
+    private static TaskOptions createTask(final String userId, final String cursor) {
+        TaskOptions task = TaskOptions.Builder.withUrl("/tasks/rename_organizer")
+                .param("userId", userId);
+        return cursor == null ? task : task.param("cursor", cursor);
+    }
+}
@@ -0,0 +1,179 @@
+package com.google.devrel.training.conference.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * An immutable set of weighted values that can be completed from a prefix, ignoring case.
+ *
+ * The values are kept in an array sorted by their lower case form, so the values with a prefix
+ * are a contiguous run found with a binary search. Adding a value copies the arrays, which is
+ * cheap next to a datastore write for the few thousand values this is meant for.
+ */
+public class PrefixIndex {
+
+    /**
+     * An index without values.
+     */
+    public static final PrefixIndex EMPTY = new PrefixIndex(new String[0], new String[0],
+            new long[0]);
+
+    /**
+     * The lower case form of the values, sorted.
+     */
+    private final String[] keys;
+
+    private final String[] values;
+
+    private final long[] weights;
+
+    private PrefixIndex(String[] keys, String[] values, long[] weights) {
+        this.keys = keys;
+        this.values = values;
+        this.weights = weights;
+    }
+
+    /**
+     * Builds an index.
+     *
+     * @param weights the weight by value. Values with a weight below 1 are left out.
+     * @return the index.
+     */
+    public static PrefixIndex of(final Map<String, Long> weights) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(weights.size());
+        for (Map.Entry<String, Long> entry : weights.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() > 0) {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> entry1, Map.Entry<String, Long> entry2) {
+                return compareValues(entry1.getKey(), entry2.getKey());
+            }
+        });
+        PrefixIndex index = new PrefixIndex(new String[entries.size()],
+                new String[entries.size()], new long[entries.size()]);
+        for (int i = 0; i < entries.size(); i++) {
+            index.keys[i] = toKey(entries.get(i).getKey());
+            index.values[i] = entries.get(i).getKey();
+            index.weights[i] = entries.get(i).getValue();
+        }
+        return index;
+    }
+
+    /**
+     * Returns an index with weight added to a value, which is added when it's new.
+     *
+     * @param value the value.
+     * @param weight the weight to add.
+     * @return the new index; this one is unchanged.
+     */
+    public PrefixIndex plus(final String value, final long weight) {
+        String key = toKey(value);
+        int i = find(key, value);
+        if (i < keys.length && values[i].equals(value)) {
+            long[] newWeights = weights.clone();
+            newWeights[i] += weight;
+            return new PrefixIndex(keys, values, newWeights);
+        }
+        String[] newKeys = insert(keys, i, key);
+        String[] newValues = insert(values, i, value);
+        long[] newWeights = new long[weights.length + 1];
+        System.arraycopy(weights, 0, newWeights, 0, i);
+        newWeights[i] = weight;
+        System.arraycopy(weights, i, newWeights, i + 1, weights.length - i);
+        return new PrefixIndex(newKeys, newValues, newWeights);
+    }
+
+    /**
+     * Returns the values starting with a prefix, ignoring case, highest weight first.
+     *
+     * @param prefix the prefix.
+     * @param limit the largest number of values returned.
+     * @return the values, ties in alphabetical order.
+     */
+    public List<String> complete(final String prefix, final int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        String key = toKey(prefix);
+        // The heap holds the positions of the best values so far, the worst on top
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                int compare = Long.compare(weights[i], weights[j]);
+                return compare != 0 ? compare : Integer.compare(j, i);
+            }
+        });
+        for (int i = lowerBound(key); i < keys.length && keys[i].startsWith(key); i++) {
+            best.add(i);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        String[] completions = new String[best.size()];
+        for (int i = completions.length - 1; i >= 0; i--) {
+            completions[i] = values[best.poll()];
+        }
+        return Arrays.asList(completions);
+    }
+
+    /**
+     * @return the number of values.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the position of the first key not below the given one.
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position of a value, or where it would be inserted.
+     */
+    private int find(String key, String value) {
+        int i = lowerBound(key);
+        while (i < keys.length && keys[i].equals(key) && values[i].compareTo(value) < 0) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String[] insert(String[] array, int i, String element) {
+        String[] newArray = new String[array.length + 1];
+        System.arraycopy(array, 0, newArray, 0, i);
+        newArray[i] = element;
+        System.arraycopy(array, i, newArray, i + 1, array.length - i);
+        return newArray;
+    }
+
+    private static int compareValues(String value1, String value2) {
+        int compare = toKey(value1).compareTo(toKey(value2));
+        return compare != 0 ? compare : value1.compareTo(value2);
+    }
+
+    private static String toKey(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,69 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.devrel.training.conference.domain.Profile;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+import com.googlecode.objectify.cmd.Query;
+
+import java.util.logging.Logger;
+
+/**
+ * Rewrites the Profiles that still store their Conferences as websafe key strings.
+ *
+ * Profiles convert the old property when they are loaded and drop it when they are saved, so
+ * re-saving is all it takes. Profiles are migrated a batch at a time, each in its own
+ * transaction so that concurrent registrations aren't overwritten.
+ */
+public class ProfileMigration {
+
+    private static final Logger LOG = Logger.getLogger(ProfileMigration.class.getName());
+
+    public static final int BATCH_SIZE = 100;
+
+    private ProfileMigration() {}
+
+    /**
+     * Migrates the next batch of Profiles.
+     *
+     * @param cursor the websafe cursor returned for the previous batch, null for the first.
+     * @return the cursor for the next batch, or null when all the Profiles have been visited.
+     */
+    public static String migrateBatch(final String cursor) {
+        Query<Profile> query = ofy().load().type(Profile.class).limit(BATCH_SIZE);
+        if (cursor != null) {
+            query = query.startAt(Cursor.fromWebSafeString(cursor));
+        }
+        QueryResultIterator<Profile> iterator = query.iterator();
+        int visited = 0;
+        int migrated = 0;
+        while (iterator.hasNext()) {
+            Profile profile = iterator.next();
+            visited++;
+            if (profile.hasLegacyConferenceKeys() && migrate(Key.create(profile))) {
+                migrated++;
+            }
+        }
+        LOG.info(String.format("Migrated %d of %d profiles", migrated, visited));
+        return visited < BATCH_SIZE ? null : iterator.getCursor().toWebSafeString();
+    }
+
+    private static boolean migrate(final Key<Profile> profileKey) {
+        final boolean[] migrated = new boolean[1];
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                migrated[0] = false;
+                Profile profile = ofy().load().key(profileKey).now();
+                if (profile != null && profile.hasLegacyConferenceKeys()) {
+                    ofy().save().entity(profile).now();
+                    migrated[0] = true;
+                }
+            }
+        });
+        return migrated[0];
+    }
+}
@@ -0,0 +1,175 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.devrel.training.conference.domain.Conference;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the keys of the Conferences on a page of query results.
+ *
+ * Entries are keyed by the canonical form of the query and live in memcache, with a small
+ * in-process tier in front. Every key also carries a generation number kept in memcache; writes
+ * that can change which Conferences match a query bump the generation, which orphans all the
+ * cached entries. Each instance keeps the generation for a second, so a hit in the in-process
+ * tier costs no memcache call, and another instance's bump shows up a second late at most.
+ * Only keys are cached, the Conferences themselves are loaded by key.
+ */
+public class QueryResultCache {
+
+    private static final String GENERATION_KEY = "QUERY_CACHE_GENERATION";
+
+    private static final String MEMCACHE_KEY_PREFIX = "QUERY_CACHE_";
+
+    private static final int MEMCACHE_EXPIRATION_SECONDS = 60;
+
+    private static final int LOCAL_EXPIRATION_SECONDS = 5;
+
+    private static final int LOCAL_MAXIMUM_SIZE = 1000;
+
+    /**
+     * How long an instance uses the generation without looking at memcache.
+     */
+    private static final long GENERATION_TTL_MILLIS = 1000;
+
+    private static final Random RANDOM = new Random();
+
+    private static final Cache<String, CachedPage> LOCAL_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(LOCAL_MAXIMUM_SIZE)
+            .expireAfterWrite(LOCAL_EXPIRATION_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private static volatile Generation generation;
+
+    private QueryResultCache() {}
+
+    /**
+     * The generation as read from memcache.
+     */
+    private static class Generation {
+        private final long value;
+        private final long expiresAt;
+
+        private Generation(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * A page of query results: the websafe keys of the Conferences and the next cursor.
+     */
+    public static class CachedPage implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> websafeKeys;
+
+        private final String nextPageToken;
+
+        public CachedPage(Collection<Conference> conferences, String nextPageToken) {
+            this.websafeKeys = new ArrayList<>(conferences.size());
+            for (Conference conference : conferences) {
+                websafeKeys.add(conference.getWebsafeKey());
+            }
+            this.nextPageToken = nextPageToken;
+        }
+
+        public List<String> getWebsafeKeys() {
+            return websafeKeys;
+        }
+
+        public String getNextPageToken() {
+            return nextPageToken;
+        }
+    }
+
+    /**
+     * Returns the cached page for a query.
+     *
+     * @param canonicalQuery the canonical form of the query, including the cursor.
+     * @return the cached page, or null.
+     */
+    public static CachedPage get(String canonicalQuery) {
+        String cacheKey = getCacheKey(canonicalQuery);
+        CachedPage page = LOCAL_CACHE.getIfPresent(cacheKey);
+        if (page == null) {
+            page = (CachedPage) MemcacheServiceFactory.getMemcacheService().get(cacheKey);
+            if (page != null) {
+                LOCAL_CACHE.put(cacheKey, page);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Caches a page for a query.
+     *
+     * @param canonicalQuery the canonical form of the query, including the cursor.
+     * @param page the page of results.
+     */
+    public static void put(String canonicalQuery, CachedPage page) {
+        String cacheKey = getCacheKey(canonicalQuery);
+        MemcacheServiceFactory.getMemcacheService().put(cacheKey, page,
+                Expiration.byDeltaSeconds(MEMCACHE_EXPIRATION_SECONDS));
+        LOCAL_CACHE.put(cacheKey, page);
+    }
+
+    /**
+     * Invalidates all the cached pages, on every instance.
+     */
+    public static void invalidate() {
+        Long value = MemcacheServiceFactory.getMemcacheService().increment(GENERATION_KEY, 1,
+                initialGeneration());
+        // This instance sees its own writes right away
+        generation = value == null ? null
+                : new Generation(value, System.currentTimeMillis() + GENERATION_TTL_MILLIS);
+    }
+
+    /**
+     * Drops the in-process tier and generation, for tests that start over with an empty
+     * memcache.
+     */
+    static void reset() {
+        LOCAL_CACHE.invalidateAll();
+        generation = null;
+    }
+
+    private static String getCacheKey(String canonicalQuery) {
+        // Cursors make the canonical form too long for a memcache key.
+        return MEMCACHE_KEY_PREFIX + getGeneration() + "_"
+                + Hashing.sha1().hashString(canonicalQuery, Charsets.UTF_8);
+    }
+
+    private static long getGeneration() {
+        long now = System.currentTimeMillis();
+        Generation current = generation;
+        if (current != null && now < current.expiresAt) {
+            return current.value;
+        }
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        Long value = (Long) memcacheService.get(GENERATION_KEY);
+        if (value == null) {
+            // Starts from a random generation, so that in-process entries left over from before
+            // memcache lost the counter can't be mistaken for current ones.
+            value = memcacheService.increment(GENERATION_KEY, 0, initialGeneration());
+        }
+        generation = new Generation(value, now + GENERATION_TTL_MILLIS);
+        return value;
+    }
+
+    private static long initialGeneration() {
+        return RANDOM.nextLong() & Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,60 @@
+package com.google.devrel.training.conference.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where ConferenceSearch keeps its inverted index: for each term, the documents it occurs in
+ * and how often.
+ *
+ * Documents are identified by the websafe keys of their Conferences.
+ */
+public interface SearchIndexStore {
+
+    /**
+     * A document a term occurs in.
+     */
+    public static class Posting {
+
+        private final String documentId;
+
+        private final int frequency;
+
+        public Posting(String documentId, int frequency) {
+            this.documentId = documentId;
+            this.frequency = frequency;
+        }
+
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        public int getFrequency() {
+            return frequency;
+        }
+    }
+
+    /**
+     * Adds the postings of a document that isn't in the index yet.
+     *
+     * @param documentId the document.
+     * @param termFrequencies how often each term occurs in the document.
+     */
+    void add(String documentId, Map<String, Integer> termFrequencies);
+
+    /**
+     * Removes all the postings of a document.
+     *
+     * @param documentId the document.
+     */
+    void remove(String documentId);
+
+    /**
+     * Returns the postings of a term with the highest frequencies.
+     *
+     * @param term the term.
+     * @param limit the largest number of postings returned.
+     * @return the postings, highest frequency first.
+     */
+    List<Posting> getPostings(String term, int limit);
+}
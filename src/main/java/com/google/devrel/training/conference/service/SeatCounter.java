@@ -0,0 +1,244 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sharded counter of the seats available for Conferences.
+ *
+ * Registrations book seats from a randomly chosen SeatShard instead of rewriting the Conference
+ * entity, so a popular Conference can take many registrations per second. The sum of the shards
+ * is cached in memcache, and rolled up into Conference.seatsAvailable by a task so that the
+ * indexed property keeps working for queries.
+ */
+public class SeatCounter {
+
+    private static final Logger LOG = Logger.getLogger(SeatCounter.class.getName());
+
+    /**
+     * Number of shards per Conference.
+     */
+    public static final int NUM_SHARDS = 20;
+
+    /**
+     * How long a rolled up Conference may lag behind its shards.
+     */
+    private static final long ROLLUP_INTERVAL_MILLIS = 10 * 1000;
+
+    private static final String MEMCACHE_KEY_PREFIX = "SEATS_AVAILABLE_";
+
+    private static final int MEMCACHE_EXPIRATION_SECONDS = 60;
+
+    private static final Random RANDOM = new Random();
+
+    private SeatCounter() {}
+
+    /**
+     * Returns the keys of all the shards of a Conference.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @return the keys of the shards, in index order.
+     */
+    public static List<Key<SeatShard>> getShardKeys(final Key<Conference> conferenceKey) {
+        List<Key<SeatShard>> shardKeys = new ArrayList<>(NUM_SHARDS);
+        for (int i = 0; i < NUM_SHARDS; i++) {
+            shardKeys.add(SeatShard.createKey(conferenceKey, i));
+        }
+        return shardKeys;
+    }
+
+    /**
+     * Creates the shards of a Conference from its current seatsAvailable, unless they exist.
+     *
+     * @param conferenceKey the key of the Conference.
+     */
+    public static void ensureShards(final Key<Conference> conferenceKey) {
+        final List<Key<SeatShard>> shardKeys = getShardKeys(conferenceKey);
+        if (!ofy().load().keys(shardKeys).isEmpty()) {
+            return;
+        }
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                // Check again, another request may have created them in the meantime.
+                if (!ofy().load().keys(shardKeys).isEmpty()) {
+                    return;
+                }
+                Conference conference = ofy().load().key(conferenceKey).now();
+                if (conference == null) {
+                    return;
+                }
+                ofy().save().entities(createShards(conferenceKey,
+                        conference.getSeatsAvailable())).now();
+            }
+        });
+    }
+
+    /**
+     * Splits the given number of seats evenly over new shards.
+     */
+    static List<SeatShard> createShards(final Key<Conference> conferenceKey,
+                                        final int seatsAvailable) {
+        List<SeatShard> shards = new ArrayList<>(NUM_SHARDS);
+        for (int i = 0; i < NUM_SHARDS; i++) {
+            int seats = seatsAvailable / NUM_SHARDS + (i < seatsAvailable % NUM_SHARDS ? 1 : 0);
+            shards.add(new SeatShard(conferenceKey, i, seats));
+        }
+        return shards;
+    }
+
+    /**
+     * Returns the keys of the shards that had seats left when read, in random order.
+     *
+     * The seats must be checked again inside the booking transaction.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @return the keys of the shards worth trying to book from.
+     */
+    public static List<Key<SeatShard>> getShardKeysWithSeats(
+            final Key<Conference> conferenceKey) {
+        Map<Key<SeatShard>, SeatShard> shards = ofy().load().keys(getShardKeys(conferenceKey));
+        List<Key<SeatShard>> shardKeys = new ArrayList<>(shards.size());
+        for (Map.Entry<Key<SeatShard>, SeatShard> entry : shards.entrySet()) {
+            if (entry.getValue().getSeatsAvailable() > 0) {
+                shardKeys.add(entry.getKey());
+            }
+        }
+        Collections.shuffle(shardKeys, RANDOM);
+        return shardKeys;
+    }
+
+    /**
+     * Returns the key of a randomly chosen shard of a Conference.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @return the key of a shard.
+     */
+    public static Key<SeatShard> getRandomShardKey(final Key<Conference> conferenceKey) {
+        return SeatShard.createKey(conferenceKey, RANDOM.nextInt(NUM_SHARDS));
+    }
+
+    /**
+     * Returns the number of seats available for a Conference.
+     *
+     * Reads the cached sum of the shards, falling back to summing them up. A Conference without
+     * shards reports its own seatsAvailable.
+     *
+     * @param conference the Conference.
+     * @return the number of seats available.
+     */
+    public static int getSeatsAvailable(final Conference conference) {
+        Key<Conference> conferenceKey = conference.getKey();
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        String memcacheKey = MEMCACHE_KEY_PREFIX + conferenceKey.getString();
+        Object cached = memcacheService.get(memcacheKey);
+        if (cached != null) {
+            return ((Number) cached).intValue();
+        }
+        Integer seatsAvailable = sumShards(conferenceKey);
+        if (seatsAvailable == null) {
+            return conference.getSeatsAvailable();
+        }
+        memcacheService.put(memcacheKey, seatsAvailable.longValue(),
+                Expiration.byDeltaSeconds(MEMCACHE_EXPIRATION_SECONDS));
+        return seatsAvailable;
+    }
+
+    /**
+     * Sums up the shards of a Conference.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @return the number of seats available, or null when the Conference has no shards.
+     */
+    public static Integer sumShards(final Key<Conference> conferenceKey) {
+        Map<Key<SeatShard>, SeatShard> shards = ofy().load().keys(getShardKeys(conferenceKey));
+        if (shards.isEmpty()) {
+            return null;
+        }
+        int seatsAvailable = 0;
+        for (SeatShard shard : shards.values()) {
+            seatsAvailable += shard.getSeatsAvailable();
+        }
+        return seatsAvailable;
+    }
+
+    /**
+     * Records a committed change to the seats of a Conference.
+     *
+     * Adjusts the cached sum, updates the nearly sold out Conferences and schedules a rollup
+     * into the Conference entity. At most one rollup task is enqueued per Conference and rollup
+     * interval.
+     *
+     * @param conference the Conference.
+     * @param delta the change in seats available, negative for bookings.
+     */
+    public static void seatsChanged(final Conference conference, final int delta) {
+        Key<Conference> conferenceKey = conference.getKey();
+        String websafeConferenceKey = conferenceKey.getString();
+        Long seatsAvailable = MemcacheServiceFactory.getMemcacheService().increment(
+                MEMCACHE_KEY_PREFIX + websafeConferenceKey, delta);
+        NearlySoldOutTracker.seatsChanged(conference, seatsAvailable == null
+                ? getSeatsAvailable(conference) : seatsAvailable.intValue());
+        long bucket = System.currentTimeMillis() / ROLLUP_INTERVAL_MILLIS;
+        Queue queue = QueueFactory.getDefaultQueue();
+        try {
+            queue.add(TaskOptions.Builder.withUrl("/tasks/rollup_seats")
+                    .taskName("rollup-" + websafeConferenceKey.replaceAll("[^A-Za-z0-9_-]", "_")
+                            + "-" + bucket)
+                    .countdownMillis(ROLLUP_INTERVAL_MILLIS)
+                    .param("websafeConferenceKey", websafeConferenceKey));
+        } catch (TaskAlreadyExistsException e) {
+            // A rollup is already scheduled for this interval.
+        } catch (RuntimeException e) {
+            // The next change schedules another one.
+            LOG.log(Level.WARNING, "Failed to schedule a seat rollup for " + websafeConferenceKey,
+                    e);
+        }
+    }
+
+    /**
+     * Writes the sum of the shards of a Conference into its seatsAvailable property.
+     *
+     * The shards are read in the transaction that writes the Conference, so a booking that
+     * commits meanwhile makes the rollup retry rather than be overwritten with a stale sum. The
+     * NUM_SHARDS shards and the Conference are within the limit of a cross-group transaction.
+     *
+     * @param conferenceKey the key of the Conference.
+     */
+    public static void rollup(final Key<Conference> conferenceKey) {
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                Integer seatsAvailable = sumShards(conferenceKey);
+                if (seatsAvailable == null) {
+                    return;
+                }
+                Conference conference = ofy().load().key(conferenceKey).now();
+                if (conference == null || conference.getSeatsAvailable() == seatsAvailable) {
+                    return;
+                }
+                conference.updateSeatsAvailable(seatsAvailable);
+                ofy().save().entity(conference).now();
+            }
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.devrel.training.conference.service.ApiMetrics;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A filter that records ApiMetrics for every call of a ConferenceApi method.
+ *
+ * Endpoints turns the exceptions of API methods into status codes before the filter sees them,
+ * so failed calls are counted under the Endpoints exception that maps to their status code.
+ */
+public class ApiMetricsFilter implements Filter {
+
+    private static final String PATH_PREFIX = "/_ah/spi/" + ConferenceApi.class.getName() + ".";
+
+    private static final Map<Integer, String> EXCEPTIONS_BY_STATUS =
+            ImmutableMap.<Integer, String>builder()
+                    .put(400, "BadRequestException")
+                    .put(401, "UnauthorizedException")
+                    .put(403, "ForbiddenException")
+                    .put(404, "NotFoundException")
+                    .put(409, "ConflictException")
+                    .put(500, "InternalServerErrorException")
+                    .put(503, "ServiceUnavailableException")
+                    .build();
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        ApiMetrics.install();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        String path = ((HttpServletRequest) request).getRequestURI();
+        if (!path.startsWith(PATH_PREFIX)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ApiMetrics.Call call = ApiMetrics.start(path.substring(PATH_PREFIX.length()));
+        StatusRecordingResponse statusRecordingResponse =
+                new StatusRecordingResponse((HttpServletResponse) response);
+        String error = null;
+        try {
+            chain.doFilter(request, statusRecordingResponse);
+        } catch (IOException | ServletException | RuntimeException e) {
+            error = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            int status = statusRecordingResponse.status;
+            if (error == null && status >= 400) {
+                error = EXCEPTIONS_BY_STATUS.containsKey(status)
+                        ? EXCEPTIONS_BY_STATUS.get(status) : "HTTP " + status;
+            }
+            call.finish(error);
+        }
+    }
+
+    @Override
+    public void destroy() {}
+
+    /**
+     * Remembers the status code, which the Servlet 2.5 response doesn't expose.
+     */
+    private static class StatusRecordingResponse extends HttpServletResponseWrapper {
+
+        private int status = SC_OK;
+
+        StatusRecordingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int status) {
+            this.status = status;
+            super.setStatus(status);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void setStatus(int status, String message) {
+            this.status = status;
+            super.setStatus(status, message);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            this.status = status;
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            this.status = status;
+            super.sendError(status, message);
+        }
+    }
+}
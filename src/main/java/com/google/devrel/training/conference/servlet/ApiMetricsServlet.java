@@ -0,0 +1,69 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.service.ApiMetrics;
+import com.google.devrel.training.conference.service.ApiMetrics.EndpointMetrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet showing the ApiMetrics of this instance as a plain text table, one row per endpoint.
+ * Latency percentiles are the upper bounds of their histogram buckets.
+ */
+@SuppressWarnings("serial")
+public class ApiMetricsServlet extends HttpServlet {
+
+    private static final String ROW_FORMAT =
+            "%-28s %7s %6s %7s %6s %6s %6s %8s %6s %8s %8s %8s %7s %8s%n";
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        writer.printf("Metrics of this instance since %s%n%n",
+                new Date(ApiMetrics.getStartMillis()));
+        writer.printf(ROW_FORMAT, "endpoint", "calls", "errors", "avg ms", "p50", "p95", "p99",
+                "rpc/call", "maxrpc", "read/call", "put/call", "del/call", "tx retry", "mc hit%");
+        for (EndpointMetrics metrics : ApiMetrics.getEndpoints()) {
+            long calls = metrics.getCalls();
+            long memcacheGets = metrics.getMemcacheHits() + metrics.getMemcacheMisses();
+            writer.printf(ROW_FORMAT, metrics.getName(), calls, metrics.getErrorCount(),
+                    perCall(metrics.getTotalLatencyMillis(), calls),
+                    formatMillis(metrics.getLatencyPercentileMillis(50)),
+                    formatMillis(metrics.getLatencyPercentileMillis(95)),
+                    formatMillis(metrics.getLatencyPercentileMillis(99)),
+                    perCall(metrics.getDatastoreRpcs(), calls), metrics.getMaxDatastoreRpcs(),
+                    perCall(metrics.getEntitiesRead(), calls),
+                    perCall(metrics.getEntitiesWritten(), calls),
+                    perCall(metrics.getEntitiesDeleted(), calls),
+                    metrics.getTransactionRetries(),
+                    memcacheGets == 0 ? "-" : String.format("%.1f",
+                            100.0 * metrics.getMemcacheHits() / memcacheGets));
+        }
+        writer.printf("%nErrors%n");
+        for (EndpointMetrics metrics : ApiMetrics.getEndpoints()) {
+            for (Map.Entry<String, Long> error : metrics.getErrors().entrySet()) {
+                writer.printf("%-28s %-32s %7d%n", metrics.getName(), error.getKey(),
+                        error.getValue());
+            }
+        }
+    }
+
+    private static String perCall(long total, long calls) {
+        return calls == 0 ? "-" : String.format("%.1f", (double) total / calls);
+    }
+
+    private static String formatMillis(long millis) {
+        return millis == Long.MAX_VALUE ? ">" + ApiMetrics.LATENCY_BUCKETS_MILLIS[
+                ApiMetrics.LATENCY_BUCKETS_MILLIS.length - 1] : String.valueOf(millis);
+    }
+}
@@ -0,0 +1,27 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.service.GroupRegistrar;
+import com.googlecode.objectify.Key;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet for adding a Conference to the Profiles of the users registered as a group.
+ */
+@SuppressWarnings("serial")
+public class ApplyGroupBookingsServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        Key<Conference> conferenceKey = Key.create(request.getParameter("websafeConferenceKey"));
+        GroupRegistrar.applyPendingBookings(conferenceKey);
+        response.setStatus(204);
+    }
+}
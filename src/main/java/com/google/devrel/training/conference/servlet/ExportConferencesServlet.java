@@ -0,0 +1,52 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.devrel.training.conference.service.ConferenceExporter;
+import com.google.devrel.training.conference.service.JsonLines;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet exporting the Conference catalog as newline-delimited JSON.
+ *
+ * The runtime buffers the whole response, so each request writes a few MB of the catalog at
+ * most. When the request runs short of time or reaches that size, the last line is
+ * {"nextCursor": ...} instead of a Conference, and the export carries on from a request with
+ * that cursor as the cursor parameter.
+ */
+@SuppressWarnings("serial")
+public class ExportConferencesServlet extends HttpServlet {
+
+    /**
+     * No chunk is started after this time, which leaves room within the request deadline.
+     */
+    private static final long EXPORT_MILLIS = 45 * 1000;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        long deadlineMillis = System.currentTimeMillis() + EXPORT_MILLIS;
+        String cursor = request.getParameter("cursor");
+        if (cursor != null) {
+            try {
+                Cursor.fromWebSafeString(cursor);
+            } catch (IllegalArgumentException e) {
+                response.sendError(400, "Invalid cursor");
+                return;
+            }
+        }
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        String nextCursor = ConferenceExporter.export(writer, cursor, deadlineMillis);
+        if (nextCursor != null) {
+            writer.println("{\"nextCursor\":" + JsonLines.quote(nextCursor) + "}");
+        }
+    }
+}
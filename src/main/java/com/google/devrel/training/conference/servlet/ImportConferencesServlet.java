@@ -0,0 +1,91 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.appengine.api.users.User;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.devrel.training.conference.service.ConferenceImporter;
+import com.google.devrel.training.conference.service.ConferenceImporter.Format;
+import com.google.devrel.training.conference.service.ConferenceImporter.Report;
+import com.google.devrel.training.conference.service.ConferenceImporter.RowError;
+import com.google.devrel.training.conference.service.JsonLines;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet importing Conferences organized by the signed-in user from the request body, as CSV
+ * or newline-delimited JSON.
+ *
+ * The format is taken from the format parameter, or else from the content type. Pass
+ * sendEmails=false to skip the confirmation e-mails. The response is a JSON report of the
+ * Conferences imported, those left to tasks, and the rows that failed.
+ */
+@SuppressWarnings("serial")
+public class ImportConferencesServlet extends HttpServlet {
+
+    /**
+     * Batches are handed to tasks after this time, well within the request deadline.
+     */
+    private static final long IMPORT_MILLIS = 20 * 1000;
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        long deadlineMillis = System.currentTimeMillis() + IMPORT_MILLIS;
+        User user = UserServiceFactory.getUserService().getCurrentUser();
+        if (user == null) {
+            response.sendError(401, "Authorization required");
+            return;
+        }
+        Format format = getFormat(request);
+        if (format == null) {
+            response.sendError(400, "Unknown format, use format=csv or format=ndjson");
+            return;
+        }
+        if (request.getCharacterEncoding() == null) {
+            request.setCharacterEncoding("UTF-8");
+        }
+        Report report;
+        try (BufferedReader reader = request.getReader()) {
+            report = ConferenceImporter.importRows(reader, format, user.getUserId(),
+                    user.getEmail(), !"false".equals(request.getParameter("sendEmails")),
+                    deadlineMillis);
+        } catch (IllegalArgumentException e) {
+            // Only the CSV header fails the whole import
+            response.sendError(400, e.getMessage());
+            return;
+        }
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        writer.printf("{\"imported\":%d,\"queued\":%d,\"errorCount\":%d,\"errors\":[",
+                report.getImported(), report.getQueued(), report.getErrorCount());
+        String separator = "";
+        for (RowError error : report.getErrors()) {
+            writer.printf("%s{\"line\":%d,\"message\":%s}", separator, error.getLine(),
+                    JsonLines.quote(error.getMessage()));
+            separator = ",";
+        }
+        writer.println("]}");
+    }
+
+    private static Format getFormat(HttpServletRequest request) {
+        String format = request.getParameter("format");
+        if (format == null) {
+            String contentType = request.getContentType();
+            return contentType != null && contentType.startsWith("text/csv")
+                    ? Format.CSV : Format.NDJSON;
+        }
+        try {
+            return Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
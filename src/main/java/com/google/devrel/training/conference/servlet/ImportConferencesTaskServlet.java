@@ -0,0 +1,32 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.common.io.CharStreams;
+import com.google.devrel.training.conference.service.ConferenceImporter;
+import com.google.devrel.training.conference.service.ConferenceImporter.Format;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet writing a batch of Conferences an import handed to a task. The rows are the
+ * request body.
+ */
+@SuppressWarnings("serial")
+public class ImportConferencesTaskServlet extends HttpServlet {
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+        String rows = CharStreams.toString(request.getReader());
+        ConferenceImporter.importBatch(rows, Format.valueOf(request.getParameter("format")),
+                request.getParameter("organizerUserId"),
+                Long.parseLong(request.getParameter("firstId")),
+                Boolean.parseBoolean(request.getParameter("sendEmails")));
+        response.setStatus(204);
+    }
+}
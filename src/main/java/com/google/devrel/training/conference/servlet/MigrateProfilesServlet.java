@@ -0,0 +1,39 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.service.ProfileMigration;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet for migrating the Profiles to the compact list of Conferences to attend.
+ * An admin starts it with a GET; each batch enqueues a task for the next one.
+ */
+@SuppressWarnings("serial")
+public class MigrateProfilesServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        doPost(request, response);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String nextCursor = ProfileMigration.migrateBatch(request.getParameter("cursor"));
+        if (nextCursor != null) {
+            Queue queue = QueueFactory.getDefaultQueue();
+            queue.add(TaskOptions.Builder.withUrl("/tasks/migrate_profiles")
+                    .param("cursor", nextCursor));
+        }
+        response.setStatus(204);
+    }
+}
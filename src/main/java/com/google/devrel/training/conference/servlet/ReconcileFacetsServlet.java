@@ -0,0 +1,25 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.service.FacetCounter;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet for recounting the facet counters from the Conferences. Creating Conferences keeps
+ * the counters up to date, this only repairs counts that drifted.
+ */
+@SuppressWarnings("serial")
+public class ReconcileFacetsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        FacetCounter.reconcile();
+        response.setStatus(204);
+    }
+}
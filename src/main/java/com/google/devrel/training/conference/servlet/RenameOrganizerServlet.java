@@ -0,0 +1,26 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.service.OrganizerRenamer;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet for copying an organizer's new display name into a batch of their Conferences.
+ * Each batch enqueues a task for the next one.
+ */
+@SuppressWarnings("serial")
+public class RenameOrganizerServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        OrganizerRenamer.renameBatch(request.getParameter("userId"),
+                request.getParameter("cursor"));
+        response.setStatus(204);
+    }
+}
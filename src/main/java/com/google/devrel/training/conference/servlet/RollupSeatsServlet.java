@@ -0,0 +1,29 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.service.SeatCounter;
+import com.googlecode.objectify.Key;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet for rolling up the seat shards of a Conference into its seatsAvailable property.
+ * The Conference entity keeps the indexed seatsAvailable that queries and the announcement
+ * cron filter on.
+ */
+@SuppressWarnings("serial")
+public class RollupSeatsServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        Key<Conference> conferenceKey = Key.create(request.getParameter("websafeConferenceKey"));
+        SeatCounter.rollup(conferenceKey);
+        response.setStatus(204);
+    }
+}
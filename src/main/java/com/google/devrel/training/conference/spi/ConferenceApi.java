@@ -4,32 +4,61 @@ import static com.google.devrel.training.conference.service.OfyService.ofy;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
 
 import com.google.api.server.spi.config.Api;
 import com.google.api.server.spi.config.ApiMethod;
 import com.google.api.server.spi.config.ApiMethod.HttpMethod;
 import com.google.api.server.spi.config.Named;
+import com.google.api.server.spi.config.Nullable;
+import com.google.api.server.spi.response.BadRequestException;
+import com.google.api.server.spi.response.CollectionResponse;
 import com.google.api.server.spi.response.ConflictException;
 import com.google.api.server.spi.response.ForbiddenException;
 import com.google.api.server.spi.response.NotFoundException;
 import com.google.api.server.spi.response.UnauthorizedException;
-import com.google.appengine.api.memcache.MemcacheService;
-import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.appengine.api.taskqueue.Queue;
-import com.google.appengine.api.taskqueue.QueueFactory;
-import com.google.appengine.api.taskqueue.TaskOptions;
 import com.google.appengine.api.users.User;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
 import com.google.devrel.training.conference.Constants;
 import com.google.devrel.training.conference.domain.Announcement;
 import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ConferenceSummary;
+import com.google.devrel.training.conference.domain.Dashboard;
+import com.google.devrel.training.conference.domain.Facets;
+import com.google.devrel.training.conference.domain.GroupRegistration;
 import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.SeatShard;
 import com.google.devrel.training.conference.form.ConferenceForm;
 import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.QueryPlan;
+import com.google.devrel.training.conference.form.GroupRegistrationForm;
 import com.google.devrel.training.conference.form.ProfileForm;
 import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.google.devrel.training.conference.service.AnnouncementCache;
+import com.google.devrel.training.conference.service.Autocomplete;
+import com.google.devrel.training.conference.service.ConferenceIdPool;
+import com.google.devrel.training.conference.service.ConferenceKeyCache;
+import com.google.devrel.training.conference.service.ConferenceSearch;
+import com.google.devrel.training.conference.service.ConferenceSummaries;
+import com.google.devrel.training.conference.service.ConfirmationEmailSender;
+import com.google.devrel.training.conference.service.FacetCounter;
+import com.google.devrel.training.conference.service.GroupRegistrar;
+import com.google.devrel.training.conference.service.OrganizerNameResolver;
+import com.google.devrel.training.conference.service.OrganizerRenamer;
+import com.google.devrel.training.conference.service.QueryResultCache;
+import com.google.devrel.training.conference.service.QueryResultCache.CachedPage;
+import com.google.devrel.training.conference.service.SeatCounter;
 import com.googlecode.objectify.Key;
-import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.LoadResult;
 import com.googlecode.objectify.Work;
 import com.googlecode.objectify.cmd.Query;
 
@@ -45,6 +74,23 @@ import com.googlecode.objectify.cmd.Query;
 	description = "API for the Conference Central Backend application.")
 public class ConferenceApi {
 
+    private static final Logger LOG = Logger.getLogger(ConferenceApi.class.getName());
+
+    /**
+     * The maximum number of Conferences a page looks at while applying in-memory filters.
+     */
+    private static final int MAX_SCANNED_PER_PAGE = 1000;
+
+    /**
+     * The largest number countConferences counts up to.
+     */
+    private static final int MAX_COUNT = 1000;
+
+    /**
+     * The number of suggestions autocomplete returns unless asked otherwise.
+     */
+    private static final int DEFAULT_SUGGESTIONS = 10;
+
     /*
      * Get the display name from the user's email. For example, if the email is
      * lemoncake@example.com, then the display name becomes "lemoncake."
@@ -75,36 +121,47 @@ public class ConferenceApi {
         	throw new UnauthorizedException("Authorization recquired");
     	
     	// get userId and mainEmail
-        String userId = user.getUserId();        
-        String mainEmail = user.getEmail();   
+        final String userId = user.getUserId();        
+        final String mainEmail = user.getEmail();   
         
         // get displayName and teeShirtSize sent by the request
-        String displayName = profileForm.getDisplayName();        
-        TeeShirtSize teeShirtSize = profileForm.getTeeShirtSize();
-        
-        Profile profile = getProfile(user);   
-        
-        if(profile == null){
-        	// Extract displayName from email if not specified by the request
-        	if(displayName == null)
-        		displayName = extractDefaultDisplayNameFromEmail(mainEmail);
-        	
-        	// set teeShirtSize to NOT_SPECIFIED if not specified by the request
-            if(teeShirtSize == null)
-            	teeShirtSize = TeeShirtSize.NOT_SPECIFIED;
-        	// Create a new profile
-        	profile = new Profile(userId, displayName, mainEmail, teeShirtSize);
-        }
-        else{
-        	// Update existing profile
-        	profile.update(displayName, teeShirtSize);
-        }
+        final String displayName = profileForm.getDisplayName();        
+        final TeeShirtSize teeShirtSize = profileForm.getTeeShirtSize();
         
-        // Saving a profile to the database
-        ofy().save().entity(profile).now();
+        // The Profile is saved together with the task that copies a new display name into
+        // the user's Conferences
+        return ofy().transact(new Work<Profile>() {
+            @Override
+            public Profile run() {
+                Profile profile = ofy().load().key(Key.create(Profile.class, userId)).now();
 
-        // Return the profile
-        return profile;
+                if(profile == null){
+                    // Extract displayName from email if not specified by the request,
+                    // and set teeShirtSize to NOT_SPECIFIED if not specified either
+                    profile = new Profile(userId,
+                            displayName == null
+                                    ? extractDefaultDisplayNameFromEmail(mainEmail)
+                                    : displayName,
+                            mainEmail,
+                            teeShirtSize == null ? TeeShirtSize.NOT_SPECIFIED : teeShirtSize);
+                }
+                else{
+                    // Update existing profile
+                    String oldDisplayName = profile.getDisplayName();
+                    profile.update(displayName, teeShirtSize);
+                    if (!Objects.equal(oldDisplayName, profile.getDisplayName())) {
+                        // The user's Conferences hold the old name until the task catches up
+                        OrganizerRenamer.renamed(userId);
+                    }
+                }
+
+                // Saving a profile to the database
+                ofy().save().entity(profile).now();
+
+                // Return the profile
+                return profile;
+            }
+        });
     }
 
     /**
@@ -151,16 +208,15 @@ public class ConferenceApi {
         // Get the key for the User's Profile
         final Key<Profile> profileKey = Key.create(Profile.class, userId);
 
-        // Allocate a key for the conference -- let App Engine allocate the ID
-        // Don't forget to include the parent Profile in the allocated ID
-        final Key<Conference> conferenceKey = ObjectifyService.factory().allocateId(profileKey, Conference.class);
+        // Take a key for the conference from the pre-allocated IDs
+        // Don't forget to include the parent Profile in the key
+        final Key<Conference> conferenceKey = ConferenceIdPool.nextKey(profileKey);
 
         // Get the Conference Id from the Key
         final long conferenceId = conferenceKey.getId();//        
         
-        // Get default queue
-        //final Queue queue = QueueFactory.getQueue("email");
-        final Queue queue = QueueFactory.getDefaultQueue();
+        // Confirmation e-mails are pulled from the email queue and sent in batches
+        final Queue queue = ConfirmationEmailSender.getQueue();
         
         Conference conference = ofy().transact(new Work<Conference>(){
             @Override
@@ -176,41 +232,71 @@ public class ConferenceApi {
                 // Create a new Conference Entity, specifying the user's Profile entity
                 // as the parent of the conference
                 Conference conference = new Conference(conferenceId, userId, conferenceForm);
+                conference.setOrganizerDisplayName(profile.getDisplayName());
 
                 // Save Conference and Profile Entities
                 ofy().save().entities(conference, profile).now();
+
+                FacetCounter.conferencesAdded(Collections.singletonList(conference));
+                ConferenceSearch.index(conference);
                  
                 // 
-                queue.add(ofy().getTransaction(), TaskOptions.Builder.withUrl("/task/send_confirmation_email")
-                        .param("email", profile.getMainEmail())
-                        .param("conferenceInfo", conference.toString()));
+                queue.add(ofy().getTransaction(), ConfirmationEmailSender.createTask(
+                        profile.getMainEmail(), conference.toString()));
 
                  return conference;
             }
         });
         
+        // Cached query results may be missing the new conference
+        QueryResultCache.invalidate();
+        Autocomplete.conferenceAdded(conference);
+
         return conference;        
     }
     
     /**
-     * Queries against the datastore with given filters and returns the result
+     * Queries against the datastore with given filters and returns one page of the result
      * 
-     * @return A list of conferences that match the given filter
+     * @return A page of conferences that match the given filter, with the cursor of the next
+     *         page if there may be more
+     * @throws BadRequestException when the cursor is malformed.
      */
     @ApiMethod(name = "queryConferences", path = "queryConferences", httpMethod = HttpMethod.POST)
-    public List<Conference> queryConference(ConferenceQueryForm conferenceQueryForm){
-    	//Query<Conference> query = ofy().load().type(Conference.class).order("name");
-    	
-    	return conferenceQueryForm.getQuery().list();
+    public CollectionResponse<Conference> queryConference(ConferenceQueryForm conferenceQueryForm)
+            throws BadRequestException {
+        // The same few filter combinations make up most queries, so pages are cached by key
+        String canonicalQuery = conferenceQueryForm.getCanonicalForm();
+        CachedPage cachedPage = QueryResultCache.get(canonicalQuery);
+        if (cachedPage != null) {
+            return CollectionResponse.<Conference>builder()
+                    .setItems(OrganizerNameResolver.resolve(
+                            loadConferences(cachedPage.getWebsafeKeys())))
+                    .setNextPageToken(cachedPage.getNextPageToken())
+                    .build();
+        }
+        QueryPlan queryPlan = conferenceQueryForm.getQueryPlan();
+        CollectionResponse<Conference> page = queryPage(queryPlan.getQuery(),
+                queryPlan.hasResidualFilters() ? queryPlan : null,
+                conferenceQueryForm.getCursor(), conferenceQueryForm.getPageSize());
+        QueryResultCache.put(canonicalQuery,
+                new CachedPage(page.getItems(), page.getNextPageToken()));
+        return page;
     }
     
     /**
-     * Returns a list of conferences created by the user
+     * Returns a page of the conferences created by the user
      * 
-     * @return list of conferences created by the user ordered by name
+     * @param cursor The cursor returned with the previous page, null for the first page.
+     * @param pageSize The maximum number of conferences to return, null for the default.
+     * @return page of the conferences created by the user ordered by name
+     * @throws BadRequestException when the cursor is malformed.
      */
     @ApiMethod(name = "getConferencesCreated", path = "getConferencesCreated", httpMethod = HttpMethod.POST)
-    public List<Conference> getConferencesCreated(User user) throws UnauthorizedException{
+    public CollectionResponse<Conference> getConferencesCreated(User user,
+            @Nullable @Named("cursor") String cursor,
+            @Nullable @Named("pageSize") Integer pageSize)
+            throws UnauthorizedException, BadRequestException {
     	// If a user is not logged in throw UnauthorizedException
     	if(user == null)
         	throw new UnauthorizedException("Authorization recquired");
@@ -220,7 +306,295 @@ public class ConferenceApi {
     	
     	Query<Conference> query = ofy().load().type(Conference.class).ancestor(profileKey).order("name");
     	
-    	return query.list();
+    	return queryPage(query, null, cursor, pageSize == null ? 0 : pageSize);
+    }
+
+    /**
+     * Queries the Conferences like queryConferences, but returns only what conference lists
+     * show. Reads the indexes with a projection query instead of loading whole Conferences,
+     * and doesn't look up organizers.
+     *
+     * @return A page of summaries of the conferences that match the given filters, with the
+     *         cursor of the next page if there may be more
+     * @throws BadRequestException when the cursor is malformed.
+     */
+    @ApiMethod(
+            name = "queryConferenceSummaries",
+            path = "queryConferenceSummaries",
+            httpMethod = HttpMethod.POST
+    )
+    public CollectionResponse<ConferenceSummary> queryConferenceSummaries(
+            ConferenceQueryForm conferenceQueryForm) throws BadRequestException {
+        QueryPlan queryPlan = conferenceQueryForm.getQueryPlan();
+        Predicate<Conference> residualFilter = queryPlan.hasResidualFilters() ? queryPlan : null;
+        String cursor = conferenceQueryForm.getCursor();
+        int limit = getPageLimit(conferenceQueryForm.getPageSize());
+        CollectionResponse<Conference> page;
+        if (ConferenceSummaries.canProject(queryPlan)) {
+            FetchOptions fetchOptions = residualFilter == null
+                    ? FetchOptions.Builder.withLimit(limit)
+                    : FetchOptions.Builder.withChunkSize(limit * 2);
+            try {
+                if (cursor != null && !cursor.isEmpty()) {
+                    fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid cursor: " + cursor);
+            }
+            page = readPage(ConferenceSummaries.project(queryPlan, fetchOptions),
+                    residualFilter, limit);
+        } else {
+            // Summaries don't show the organizer, so there is no Profile to look up
+            page = queryPageWithoutOrganizers(queryPlan.getQuery(), residualFilter, cursor,
+                    limit);
+        }
+        List<ConferenceSummary> summaries = new ArrayList<>(page.getItems().size());
+        for (Conference conference : page.getItems()) {
+            summaries.add(new ConferenceSummary(conference));
+        }
+        return CollectionResponse.<ConferenceSummary>builder()
+                .setItems(summaries)
+                .setNextPageToken(page.getNextPageToken())
+                .build();
+    }
+
+    /**
+     * WrappedCount is a wrapper for a number of results, which may be a lower bound.
+     */
+    public static class WrappedCount {
+
+        private final int count;
+        private final boolean exact;
+
+        public WrappedCount(int count, boolean exact) {
+            this.count = count;
+            this.exact = exact;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean getExact() {
+            return exact;
+        }
+    }
+
+    /**
+     * Counts the Conferences that match the given filters, up to MAX_COUNT.
+     *
+     * Runs a keys-only query when the datastore can evaluate all the filters, and a projection
+     * query otherwise.
+     *
+     * @return the number of matching Conferences; not exact when there are more than MAX_COUNT,
+     *         or when in-memory filters had to stop at the scan limit.
+     */
+    @ApiMethod(name = "countConferences", path = "countConferences", httpMethod = HttpMethod.POST)
+    public WrappedCount countConferences(ConferenceQueryForm conferenceQueryForm) {
+        QueryPlan queryPlan = conferenceQueryForm.getQueryPlan();
+        if (!queryPlan.hasResidualFilters()) {
+            int count = queryPlan.getQuery().limit(MAX_COUNT + 1).keys().list().size();
+            return new WrappedCount(Math.min(count, MAX_COUNT), count <= MAX_COUNT);
+        }
+        Iterator<Conference> conferences = ConferenceSummaries.canProject(queryPlan)
+                ? ConferenceSummaries.project(queryPlan,
+                        FetchOptions.Builder.withChunkSize(Constants.MAX_PAGE_SIZE))
+                : queryPlan.getQuery().chunk(Constants.MAX_PAGE_SIZE).iterator();
+        int count = 0;
+        int scanned = 0;
+        while (count <= MAX_COUNT && scanned < MAX_SCANNED_PER_PAGE && conferences.hasNext()) {
+            scanned++;
+            if (queryPlan.apply(conferences.next())) {
+                count++;
+            }
+        }
+        boolean exact = count <= MAX_COUNT && !conferences.hasNext();
+        return new WrappedCount(Math.min(count, MAX_COUNT), exact);
+    }
+
+    /**
+     * Searches the names and descriptions of Conferences for words.
+     *
+     * Reads the inverted index of ConferenceSearch, never the Conferences themselves, then
+     * loads the Conferences of the page in one batch.
+     *
+     * @param query the words to search for.
+     * @param cursor the nextPageToken of the previous page, absent for the first page.
+     * @param pageSize the largest number of Conferences returned.
+     * @return a page of the matching Conferences, best match first, with the cursor of the next
+     *         page if there are more.
+     * @throws BadRequestException when the cursor is malformed.
+     */
+    @ApiMethod(name = "searchConferences", path = "searchConferences",
+            httpMethod = HttpMethod.GET)
+    public CollectionResponse<Conference> searchConferences(@Named("query") String query,
+            @Nullable @Named("cursor") String cursor,
+            @Nullable @Named("pageSize") Integer pageSize) throws BadRequestException {
+        ConferenceSearch.Page page;
+        try {
+            page = ConferenceSearch.search(query, cursor,
+                    getPageLimit(pageSize == null ? 0 : pageSize));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        return CollectionResponse.<Conference>builder()
+                .setItems(OrganizerNameResolver.resolve(loadConferences(page.getWebsafeKeys())))
+                .setNextPageToken(page.getNextCursor())
+                .build();
+    }
+
+    /**
+     * Wraps the suggestions of autocomplete.
+     */
+    public static class WrappedSuggestions {
+
+        private final List<String> suggestions;
+
+        public WrappedSuggestions(List<String> suggestions) {
+            this.suggestions = suggestions;
+        }
+
+        public List<String> getSuggestions() {
+            return suggestions;
+        }
+    }
+
+    /**
+     * Suggests values for the city and topic filters, from an in-memory index of this instance.
+     *
+     * @param field CITY or TOPIC.
+     * @param prefix the start of the value, in any case.
+     * @param limit the largest number of suggestions, 10 by default.
+     * @return the values starting with the prefix, most Conferences first.
+     * @throws BadRequestException when the field is neither CITY nor TOPIC.
+     */
+    @ApiMethod(name = "autocomplete", path = "autocomplete", httpMethod = HttpMethod.GET)
+    public WrappedSuggestions autocomplete(@Named("field") String field,
+            @Named("prefix") String prefix, @Nullable @Named("limit") Integer limit)
+            throws BadRequestException {
+        Autocomplete.Field autocompleteField;
+        try {
+            autocompleteField = Autocomplete.Field.valueOf(field);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cannot autocomplete " + field);
+        }
+        return new WrappedSuggestions(Autocomplete.suggest(autocompleteField, prefix,
+                limit == null ? DEFAULT_SUGGESTIONS : limit));
+    }
+
+    /**
+     * Returns the number of Conferences and seats per city, topic and start month, for the
+     * filters of the conference list.
+     *
+     * The counts are kept in sharded counters as Conferences are created, and read with one
+     * batch get. They may lag by up to a minute.
+     *
+     * @return the counts per city, topic and month, most Conferences first.
+     */
+    @ApiMethod(name = "getFacets", path = "facets", httpMethod = HttpMethod.GET)
+    public Facets getFacets() {
+        return FacetCounter.getFacets();
+    }
+
+    /**
+     * Runs the query for a single page of Conferences.
+     *
+     * When there are filters to apply in memory, the query results are streamed through them
+     * until the page is full, or until MAX_SCANNED_PER_PAGE Conferences have been looked at. In
+     * the latter case the page may be short, but still comes with a cursor to continue from.
+     *
+     * @param query The query to run.
+     * @param residualFilter The filters the datastore couldn't evaluate, or null.
+     * @param cursor The websafe cursor to start at, null for the first page.
+     * @param pageSize The maximum number of Conferences to return, the default page size when 0.
+     * @return the page, with the cursor of the next page when there may be more Conferences.
+     * @throws BadRequestException when the cursor is malformed.
+     */
+    private static CollectionResponse<Conference> queryPage(Query<Conference> query,
+            Predicate<Conference> residualFilter, String cursor, int pageSize)
+            throws BadRequestException {
+        CollectionResponse<Conference> page = queryPageWithoutOrganizers(query, residualFilter,
+                cursor, pageSize);
+        return CollectionResponse.<Conference>builder()
+                .setItems(OrganizerNameResolver.resolve(page.getItems()))
+                .setNextPageToken(page.getNextPageToken())
+                .build();
+    }
+
+    /**
+     * Runs the query for a single page of Conferences like queryPage, but leaves the display
+     * names of the organizers of older Conferences unresolved.
+     */
+    private static CollectionResponse<Conference> queryPageWithoutOrganizers(
+            Query<Conference> query, Predicate<Conference> residualFilter, String cursor,
+            int pageSize) throws BadRequestException {
+        int limit = getPageLimit(pageSize);
+        QueryResultIterator<Conference> iterator;
+        try {
+            if (cursor != null && !cursor.isEmpty()) {
+                query = query.startAt(Cursor.fromWebSafeString(cursor));
+            }
+            // Without residual filters the datastore can stop after a page, otherwise fetch in
+            // batches until enough Conferences pass.
+            query = residualFilter == null ? query.limit(limit) : query.chunk(limit * 2);
+            // The datastore only validates the cursor when the query runs
+            iterator = query.iterator();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+        return readPage(iterator, residualFilter, limit);
+    }
+
+    /**
+     * Reads a page of Conferences from query results, applying the residual filters.
+     *
+     * @param iterator The query results.
+     * @param residualFilter The filters the datastore couldn't evaluate, or null.
+     * @param limit The maximum number of Conferences to return.
+     * @return the page, with the cursor of the next page when there may be more Conferences.
+     * @throws BadRequestException when the datastore rejects the cursor.
+     */
+    private static CollectionResponse<Conference> readPage(
+            QueryResultIterator<Conference> iterator, Predicate<Conference> residualFilter,
+            int limit) throws BadRequestException {
+        List<Conference> conferences = new ArrayList<>(limit);
+        int scanned = 0;
+        boolean scanLimited = false;
+        try {
+            while (conferences.size() < limit && iterator.hasNext()) {
+                if (scanned == MAX_SCANNED_PER_PAGE) {
+                    scanLimited = true;
+                    break;
+                }
+                Conference conference = iterator.next();
+                scanned++;
+                if (residualFilter == null || residualFilter.apply(conference)) {
+                    conferences.add(conference);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (residualFilter != null && scanned > conferences.size()) {
+            LOG.info(String.format("Scanned %d conferences for a page of %d", scanned,
+                    conferences.size()));
+            if (scanLimited) {
+                LOG.warning("Query stopped at the scan limit: " + residualFilter);
+            }
+        }
+        // A short page is the last one, unless the scan limit cut it short. Queries the
+        // datastore runs as several merged queries have no cursor.
+        Cursor cursor = conferences.size() < limit && !scanLimited ? null : iterator.getCursor();
+        String nextCursor = cursor == null ? null : cursor.toWebSafeString();
+        return CollectionResponse.<Conference>builder()
+                .setItems(conferences)
+                .setNextPageToken(nextCursor)
+                .build();
+    }
+
+    private static int getPageLimit(int pageSize) {
+        return pageSize <= 0 ? Constants.DEFAULT_PAGE_SIZE
+                : Math.min(pageSize, Constants.MAX_PAGE_SIZE);
     }
     
     /**
@@ -288,59 +662,69 @@ public class ConferenceApi {
             throw new UnauthorizedException("Authorization required");
         }
 
-        // Get the userId
-        final String userId = user.getUserId();
+        // Get the conference key
+        final Key<Conference> conferenceKey;
+        try {
+            conferenceKey = ConferenceKeyCache.parse(websafeConferenceKey);
+        } catch (IllegalArgumentException e) {
+            throw new ForbiddenException("Unknown exception");
+        }
 
-        // Start transaction
-        WrappedBoolean result = ofy().transact(new Work<WrappedBoolean>() {
-            @Override
-            public WrappedBoolean run(){
-                try {
+        // Get the Conference entity from the datastore. It is only checked here, seats are
+        // booked from its seat shards so that registrations don't contend on the Conference.
+        Conference conference = ofy().load().key(conferenceKey).now();
 
-                // Get the conference key
-                // throws ForbiddenException if the key cannot be created
-                Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+        // 404 when there is no Conference with the given conferenceId.
+        if (conference == null) {
+            throw new NotFoundException("No Conference found with key: " + websafeConferenceKey);
+        }
+        SeatCounter.ensureShards(conferenceKey);
 
-                // Get the Conference entity from the datastore
-                Conference conference = ofy().load().key(conferenceKey).now();
+        // Try the shards that have seats left, in random order, until one of them books us
+        WrappedBoolean result = new WrappedBoolean(false, "No seats available");
+        for (final Key<SeatShard> shardKey : SeatCounter.getShardKeysWithSeats(conferenceKey)) {
+            result = ofy().transact(new Work<WrappedBoolean>() {
+                @Override
+                public WrappedBoolean run() {
+                    try {
+                        // Get the user's Profile entity
+                        Profile profile = getProfile(user);
 
-                // 404 when there is no Conference with the given conferenceId.
-                if (conference == null) {
-                    return new WrappedBoolean (false,
-                            "No Conference found with key: "
-                                    + websafeConferenceKey);
-                }
+                        // Has the user already registered to attend this conference?
+                        if (profile.isRegisteredFor(conferenceKey)) {
+                            return new WrappedBoolean(false, "Already registered");
+                        }
 
-                // Get the user's Profile entity
-                Profile profile = getProfile(user);
+                        // Someone else may have taken the last seat of this shard
+                        SeatShard shard = ofy().load().key(shardKey).now();
+                        if (shard.getSeatsAvailable() <= 0) {
+                            return new WrappedBoolean(false, "No seats available");
+                        }
 
-                // Has the user already registered to attend this conference?
-                if (profile.getConferenceKeysToAttend().contains(
-                        websafeConferenceKey)) {
-                    return new WrappedBoolean (false, "Already registered");
-                } else if (conference.getSeatsAvailable() <= 0) {
-                    return new WrappedBoolean (false, "No seats available");
-                } else {
-                    // Add the websafeConferenceKey to the profile's
-                    // conferencesToAttend property
-                    profile.addToConferenceKeysToAttend(websafeConferenceKey);
-                    
-                    // Decrease the conference's seatsAvailable
-                    conference.bookSeats(1);
-                    
-                    // Save the Conference and Profile entities
-                    ofy().save().entities(profile, conference).now();
-                    
-                    // We are booked!
-                    return new WrappedBoolean(true, "Registration successful");
-                }
+                        // Add the websafeConferenceKey to the profile's
+                        // conferencesToAttend property
+                        profile.addToConferencesToAttend(conferenceKey);
 
+                        // Decrease the shard's seatsAvailable
+                        shard.bookSeats(1);
+
+                        // Save the SeatShard and Profile entities
+                        ofy().save().entities(profile, shard).now();
+
+                        // We are booked!
+                        return new WrappedBoolean(true, "Registration successful");
+                    } catch (Exception e) {
+                        return new WrappedBoolean(false, "Unknown exception");
+                    }
                 }
-                catch (Exception e) {
-                    return new WrappedBoolean(false, "Unknown exception");
-                }
+            });
+            if (!"No seats available".equals(result.getReason())) {
+                break;
             }
-        });
+        }
+        if (result.getResult()) {
+            SeatCounter.seatsChanged(conference, -1);
+        }
         // if result is false
         if (!result.getResult()) {
             if (result.getReason().contains("No Conference found with key")) {
@@ -359,6 +743,59 @@ public class ConferenceApi {
         return result;
     }
     
+    /**
+     * Registers a group of users to attend the specified Conference, such as the employees of
+     * a company. Only the organizer of the Conference can register others.
+     *
+     * The seats of the whole group are booked at once, and the users' Profiles are updated by
+     * a task shortly after. Registering the same users again changes nothing.
+     *
+     * @param user An user who invokes this method, null when the user is not signed in.
+     * @param websafeConferenceKey The String representation of the Conference Key.
+     * @param groupRegistrationForm The user IDs of the users to register.
+     * @return the outcome of the registration for each user.
+     * @throws UnauthorizedException when the user is not signed in.
+     * @throws NotFoundException when there is no Conference with the given conferenceId.
+     * @throws ForbiddenException when the user is not the organizer of the Conference.
+     * @throws BadRequestException when there are no users, or more than MAX_GROUP_SIZE.
+     */
+    @ApiMethod(
+            name = "registerGroupForConference",
+            path = "conference/{websafeConferenceKey}/groupRegistration",
+            httpMethod = HttpMethod.POST
+    )
+    public GroupRegistration registerGroupForConference(final User user,
+            @Named("websafeConferenceKey") final String websafeConferenceKey,
+            final GroupRegistrationForm groupRegistrationForm)
+            throws UnauthorizedException, NotFoundException, ForbiddenException,
+            BadRequestException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        List<String> userIds = groupRegistrationForm.getUserIds();
+        if (userIds == null || userIds.isEmpty()) {
+            throw new BadRequestException("No users to register");
+        }
+        if (userIds.size() > GroupRegistrar.MAX_GROUP_SIZE) {
+            throw new BadRequestException(String.format(
+                    "At most %d users can be registered at once", GroupRegistrar.MAX_GROUP_SIZE));
+        }
+        Key<Conference> conferenceKey;
+        try {
+            conferenceKey = ConferenceKeyCache.parse(websafeConferenceKey);
+        } catch (IllegalArgumentException e) {
+            throw new NotFoundException("No Conference found with key: " + websafeConferenceKey);
+        }
+        Conference conference = ofy().load().key(conferenceKey).now();
+        if (conference == null) {
+            throw new NotFoundException("No Conference found with key: " + websafeConferenceKey);
+        }
+        if (!user.getUserId().equals(conference.getOrganizerUserId())) {
+            throw new ForbiddenException("Only the organizer can register a group");
+        }
+        return new GroupRegistration(GroupRegistrar.register(conference, userIds));
+    }
+
     /**
      * Returns a Conference object with the given conferenceId.
      *
@@ -374,11 +811,13 @@ public class ConferenceApi {
     public Conference getConference(
             @Named("websafeConferenceKey") final String websafeConferenceKey)
             throws NotFoundException {
-        Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+        Key<Conference> conferenceKey = ConferenceKeyCache.parse(websafeConferenceKey);
         Conference conference = ofy().load().key(conferenceKey).now();
         if (conference == null) {
             throw new NotFoundException("No Conference found with key: " + websafeConferenceKey);
         }
+        // The Conference entity is only rolled up periodically, the shards are up to date
+        conference.updateSeatsAvailable(SeatCounter.getSeatsAvailable(conference));
         return conference;
     }
     
@@ -402,21 +841,112 @@ public class ConferenceApi {
         }
         
         // Get the Profile entity for the user
-        Profile profile = getProfile(user); // Change this;
+        Profile profile = getProfile(user);
         if (profile == null) {
             throw new NotFoundException("Profile doesn't exist.");
         }
         
-        // Get the value of the profile's conferenceKeysToAttend property
-        List<String> keyStringsToAttend = profile.getConferenceKeysToAttend(); // change this
+        // Collection of conferences that the user is to attend, in registration order
+        Collection<Conference> conferencesToAttend =
+                loadConferencesByKey(profile.getConferencesToAttend());
 
-        // Collection of conferences that the user is to attend
-        Collection<Conference> conferencesToAttend = new ArrayList<Conference>(0);
-        for(String key : keyStringsToAttend){
-            conferencesToAttend.add(getConference(key));
+        return OrganizerNameResolver.resolve(conferencesToAttend);
+    }
+    
+    /**
+     * Returns the user's Profile, the first page of the conferences the user has created and
+     * the conferences the user will attend, in one request.
+     *
+     * The Profile load and the query for the conferences created are started together, and
+     * the conferences to attend are loaded as soon as the Profile arrives, while the query is
+     * still running. Organizers of both lists are resolved in a single batch.
+     *
+     * @param user A user who invokes this method, null when the user is not signed in.
+     * @param pageSize The maximum number of conferences created to return, null for the default.
+     * @return the Dashboard of the user.
+     * @throws UnauthorizedException when the user is not signed in.
+     * @throws BadRequestException never, the first page has no cursor.
+     */
+    @ApiMethod(name = "getDashboard", path = "dashboard", httpMethod = HttpMethod.GET)
+    public Dashboard getDashboard(final User user, @Nullable @Named("pageSize") Integer pageSize)
+            throws UnauthorizedException, BadRequestException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        Key<Profile> profileKey = Key.create(Profile.class, user.getUserId());
+        int limit = getPageLimit(pageSize == null ? 0 : pageSize);
+
+        // Start both RPCs before waiting on either
+        LoadResult<Profile> profileResult = ofy().load().key(profileKey);
+        QueryResultIterator<Conference> createdIterator = ofy().load().type(Conference.class)
+                .ancestor(profileKey).order("name").limit(limit).iterator();
+
+        Profile profile = profileResult.now();
+        Map<Key<Conference>, Conference> attendedResult = profile == null
+                ? Collections.<Key<Conference>, Conference>emptyMap()
+                : ofy().load().keys(profile.getConferencesToAttend());
+
+        CollectionResponse<Conference> created = readPage(createdIterator, null, limit);
+        List<Conference> conferencesToAttend = new ArrayList<>(attendedResult.size());
+        if (profile != null) {
+            for (Key<Conference> conferenceKey : profile.getConferencesToAttend()) {
+                Conference conference = attendedResult.get(conferenceKey);
+                if (conference != null) {
+                    conferencesToAttend.add(conference);
+                }
+            }
         }
 
-        return conferencesToAttend;  // change this
+        List<Conference> allConferences = new ArrayList<>(created.getItems());
+        allConferences.addAll(conferencesToAttend);
+        OrganizerNameResolver.resolve(allConferences);
+        return new Dashboard(profile, created.getItems(), created.getNextPageToken(),
+                conferencesToAttend);
+    }
+
+    /**
+     * Loads Conferences by their websafe keys in a single batch.
+     *
+     * Malformed keys and keys of Conferences that no longer exist are logged and skipped.
+     *
+     * @param websafeConferenceKeys The String representations of the Conference Keys.
+     * @return the Conferences, in the order of the keys.
+     */
+    private static List<Conference> loadConferences(List<String> websafeConferenceKeys) {
+        // Parse all the websafe keys up front so that they can be fetched in one batch
+        List<Key<Conference>> conferenceKeys = new ArrayList<>(websafeConferenceKeys.size());
+        for (String websafeConferenceKey : websafeConferenceKeys) {
+            try {
+                conferenceKeys.add(ConferenceKeyCache.parse(websafeConferenceKey));
+            } catch (IllegalArgumentException e) {
+                LOG.warning("Skipping malformed conference key: " + websafeConferenceKey);
+            }
+        }
+        return loadConferencesByKey(conferenceKeys);
+    }
+
+    /**
+     * Loads Conferences by their keys in a single batch, skipping the ones that no longer exist.
+     *
+     * @param conferenceKeys The Conference Keys.
+     * @return the Conferences, in the order of the keys.
+     */
+    private static List<Conference> loadConferencesByKey(
+            Collection<Key<Conference>> conferenceKeys) {
+        // One datastore round trip for all the conferences, whatever their number
+        Map<Key<Conference>, Conference> conferences = ofy().load().keys(conferenceKeys);
+
+        List<Conference> result = new ArrayList<>(conferenceKeys.size());
+        for (Key<Conference> key : conferenceKeys) {
+            Conference conference = conferences.get(key);
+            if (conference == null) {
+                // A dangling key shouldn't hide the rest of the list
+                LOG.warning("Skipping missing conference: " + key.getString());
+                continue;
+            }
+            result.add(conference);
+        }
+        return result;
     }
     
     /**
@@ -443,29 +973,35 @@ public class ConferenceApi {
             throw new UnauthorizedException("Authorization required");
         }
 
+        final Key<Conference> conferenceKey = ConferenceKeyCache.parse(websafeConferenceKey);
+        Conference conference = ofy().load().key(conferenceKey).now();
+        // 404 when there is no Conference with the given conferenceId.
+        if (conference == null) {
+            throw new NotFoundException("No Conference found with key: " + websafeConferenceKey);
+        }
+        SeatCounter.ensureShards(conferenceKey);
+
+        // Any shard can take the seat back
+        final Key<SeatShard> shardKey = SeatCounter.getRandomShardKey(conferenceKey);
         WrappedBoolean result = ofy().transact(new Work<WrappedBoolean>() {
             @Override
             public WrappedBoolean run() {
-                Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
-                Conference conference = ofy().load().key(conferenceKey).now();
-                // 404 when there is no Conference with the given conferenceId.
-                if (conference == null) {
-                    return new  WrappedBoolean(false,
-                            "No Conference found with key: " + websafeConferenceKey);
-                }
-
                 // Un-registering from the Conference.
-                Profile profile = (Profile) ofy().load().key(Key.create(Profile.class, user.getUserId())).now();                
-                if (profile.getConferenceKeysToAttend().contains(websafeConferenceKey)) {
-                    profile.unregisterFromConfernce(websafeConferenceKey);;
-                    conference.giveBackSeats(1);
-                    ofy().save().entities(profile, conference).now();
+                Profile profile = ofy().load().key(Key.create(Profile.class, user.getUserId())).now();
+                if (profile.isRegisteredFor(conferenceKey)) {
+                    profile.unregisterFromConference(conferenceKey);
+                    SeatShard shard = ofy().load().key(shardKey).now();
+                    shard.giveBackSeats(1);
+                    ofy().save().entities(profile, shard).now();
                     return new WrappedBoolean(true);
                 } else {
                     return new WrappedBoolean(false, "You are not registered for this conference");
                 }
             }
         });
+        if (result.getResult()) {
+            SeatCounter.seatsChanged(conference, 1);
+        }
         // if result is false
         if (!result.getResult()) {
             if (result.getReason().contains("No Conference found with key")) {
@@ -485,12 +1021,7 @@ public class ConferenceApi {
             httpMethod = HttpMethod.GET
     )
     public Announcement getAnnouncement() {
-        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
-        Object message = memcacheService.get(Constants.MEMCACHE_ANNOUNCEMENTS_KEY);
-        if (message != null) {
-            return new Announcement(message.toString());
-        }
-        return null;
+        return AnnouncementCache.get();
     }
     
 }
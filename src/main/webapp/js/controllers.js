@@ -243,7 +243,7 @@ conferenceApp.controllers.controller('CreateConferenceCtrl',
  * @description
  * A controller used for the Show conferences page.
  */
-conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $log, oauth2Provider, HTTP_ERRORS) {
+conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $log, $window, oauth2Provider, HTTP_ERRORS) {
 
     /**
      * Holds the status if the query is being executed.
@@ -287,6 +287,12 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
      */
     $scope.conferences = [];
 
+    /**
+     * Holds the cursor of the next page of conferences, null when there are no more pages.
+     * @type {string}
+     */
+    $scope.nextPageToken = null;
+
     /**
      * Holds the state if offcanvas is enabled.
      *
@@ -311,7 +317,11 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
             oauth2Provider.showLoginModal();
             return;
         }
-        $scope.queryConferences();
+        if ($scope.dashboard) {
+            $scope.showDashboard();
+        } else {
+            $scope.queryConferences();
+        }
     };
 
     /**
@@ -323,7 +333,11 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
             oauth2Provider.showLoginModal();
             return;
         }
-        $scope.queryConferences();
+        if ($scope.dashboard) {
+            $scope.showDashboard();
+        } else {
+            $scope.queryConferences();
+        }
     };
 
     /**
@@ -373,6 +387,38 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
         return angular.element(event.target).hasClass('disabled');
     }
 
+    /**
+     * Fetches the next page of conferences from the server, if there is one.
+     */
+    $scope.loadMoreConferences = function () {
+        if (!$scope.nextPageToken || $scope.loading) {
+            return;
+        }
+        if ($scope.selectedTab == 'ALL') {
+            $scope.queryConferencesAll($scope.nextPageToken);
+        } else if ($scope.selectedTab == 'YOU_HAVE_CREATED') {
+            $scope.getConferencesCreated($scope.nextPageToken);
+        }
+    };
+
+    // Fetches the next page when the last page fetched so far is displayed.
+    $scope.$watch('pagination.currentPage', function (currentPage) {
+        if (currentPage >= $scope.pagination.numberOfPages() - 1) {
+            $scope.loadMoreConferences();
+        }
+    });
+
+    // Fetches the next page when the user scrolls to the bottom.
+    var onScroll = function () {
+        if ($window.innerHeight + $window.pageYOffset >= $window.document.body.offsetHeight - 100) {
+            $scope.$apply($scope.loadMoreConferences);
+        }
+    };
+    angular.element($window).bind('scroll', onScroll);
+    $scope.$on('$destroy', function () {
+        angular.element($window).unbind('scroll', onScroll);
+    });
+
     /**
      * Adds a filter and set the default value.
      */
@@ -384,6 +430,29 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
         })
     };
 
+    /**
+     * Fetches suggestions for the value of a city or topic filter as it is typed.
+     *
+     * @param filter
+     */
+    $scope.suggest = function (filter) {
+        var field = filter.field.enumValue;
+        if ((field != 'CITY' && field != 'TOPIC') || !filter.value) {
+            filter.suggestions = [];
+            return;
+        }
+        var prefix = filter.value;
+        gapi.client.conference.autocomplete({field: field, prefix: prefix}).
+            execute(function (resp) {
+                $scope.$apply(function () {
+                    // Drop the answers to prefixes typed over in the meantime
+                    if (!resp.error && filter.value == prefix) {
+                        filter.suggestions = resp.result.suggestions || [];
+                    }
+                });
+            });
+    };
+
     /**
      * Clears all filters.
      */
@@ -408,21 +477,84 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
      */
     $scope.queryConferences = function () {
         $scope.submitted = false;
+        $scope.nextPageToken = null;
         if ($scope.selectedTab == 'ALL') {
             $scope.queryConferencesAll();
-        } else if ($scope.selectedTab == 'YOU_HAVE_CREATED') {
-            $scope.getConferencesCreated();
-        } else if ($scope.selectedTab == 'YOU_WILL_ATTEND') {
-            $scope.getConferencesAttend();
+        } else if ($scope.selectedTab == 'YOU_HAVE_CREATED'
+                || $scope.selectedTab == 'YOU_WILL_ATTEND') {
+            $scope.getDashboard();
         }
     };
 
     /**
-     * Invokes the conference.queryConferences API.
+     * The result of the last conference.getDashboard call, shared by the two personal tabs.
+     */
+    $scope.dashboard = null;
+
+    /**
+     * Invokes the conference.getDashboard method, which returns the conferences created and the
+     * conferences to attend together, and shows the ones of the selected tab.
      */
-    $scope.queryConferencesAll = function () {
+    $scope.getDashboard = function () {
+        $scope.loading = true;
+        gapi.client.conference.getDashboard({pageSize: $scope.pagination.pageSize}).
+            execute(function (resp) {
+                $scope.$apply(function () {
+                    $scope.loading = false;
+                    if (resp.error) {
+                        // The request has failed.
+                        var errorMessage = resp.error.message || '';
+                        $scope.messages = 'Failed to query your conferences : ' + errorMessage;
+                        $scope.alertStatus = 'warning';
+                        $log.error($scope.messages);
+
+                        if (resp.code && resp.code == HTTP_ERRORS.UNAUTHORIZED) {
+                            oauth2Provider.showLoginModal();
+                            return;
+                        }
+                        $scope.submitted = true;
+                    } else {
+                        // The request has succeeded.
+                        $scope.dashboard = resp.result;
+                        $scope.showDashboard();
+                    }
+                });
+            });
+    };
+
+    /**
+     * Shows the conferences of the selected tab from the last dashboard. The next pages of the
+     * conferences created are loaded with conference.getConferencesCreated.
+     */
+    $scope.showDashboard = function () {
+        if ($scope.selectedTab == 'YOU_HAVE_CREATED') {
+            $scope.conferences = ($scope.dashboard.conferencesCreated || []).slice();
+            $scope.nextPageToken = $scope.dashboard.conferencesCreatedNextPageToken || null;
+            $scope.messages = 'Query succeeded : Conferences you have created';
+        } else {
+            $scope.conferences = $scope.dashboard.conferencesToAttend || [];
+            $scope.nextPageToken = null;
+            $scope.messages = 'Query succeeded : Conferences you will attend (or you have attended)';
+        }
+        $scope.pagination.currentPage = 0;
+        $scope.alertStatus = 'success';
+        $log.info($scope.messages);
+        $scope.submitted = true;
+    };
+
+    /**
+     * Invokes the conference.queryConferenceSummaries API. The summaries have what the list
+     * shows; the details page loads the whole conference.
+     *
+     * @param cursor the cursor of the page to append, starts over when not given.
+     */
+    $scope.queryConferencesAll = function (cursor) {
         var sendFilters = {
-            filters: []
+            filters: [],
+            pageSize: $scope.pagination.pageSize
+        }
+        if (cursor) {
+            sendFilters.cursor = cursor;
         }
         for (var i = 0; i < $scope.filters.length; i++) {
             var filter = $scope.filters[i];
@@ -435,7 +567,7 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
             }
         }
         $scope.loading = true;
-        gapi.client.conference.queryConferences(sendFilters).
+        gapi.client.conference.queryConferenceSummaries(sendFilters).
             execute(function (resp) {
                 $scope.$apply(function () {
                     $scope.loading = false;
@@ -452,10 +584,14 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
                         $scope.alertStatus = 'success';
                         $log.info($scope.messages);
 
-                        $scope.conferences = [];
+                        if (!cursor) {
+                            $scope.conferences = [];
+                            $scope.pagination.currentPage = 0;
+                        }
                         angular.forEach(resp.items, function (conference) {
                             $scope.conferences.push(conference);
                         });
+                        $scope.nextPageToken = resp.nextPageToken || null;
                     }
                     $scope.submitted = true;
                 });
@@ -464,10 +600,18 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
 
     /**
      * Invokes the conference.getConferencesCreated method.
+     *
+     * @param cursor the cursor of the page to append, starts over when not given.
      */
-    $scope.getConferencesCreated = function () {
+    $scope.getConferencesCreated = function (cursor) {
+        var params = {
+            pageSize: $scope.pagination.pageSize
+        };
+        if (cursor) {
+            params.cursor = cursor;
+        }
         $scope.loading = true;
-        gapi.client.conference.getConferencesCreated().
+        gapi.client.conference.getConferencesCreated(params).
             execute(function (resp) {
                 $scope.$apply(function () {
                     $scope.loading = false;
@@ -489,43 +633,14 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
                         $scope.alertStatus = 'success';
                         $log.info($scope.messages);
 
-                        $scope.conferences = [];
+                        if (!cursor) {
+                            $scope.conferences = [];
+                            $scope.pagination.currentPage = 0;
+                        }
                         angular.forEach(resp.items, function (conference) {
                             $scope.conferences.push(conference);
                         });
-                    }
-                    $scope.submitted = true;
-                });
-            });
-    };
-
-    /**
-     * Retrieves the conferences to attend by calling the conference.getProfile method and
-     * invokes the conference.getConference method n times where n == the number of the conferences to attend.
-     */
-    $scope.getConferencesAttend = function () {
-        $scope.loading = true;
-        gapi.client.conference.getConferencesToAttend().
-            execute(function (resp) {
-                $scope.$apply(function () {
-                    if (resp.error) {
-                        // The request has failed.
-                        var errorMessage = resp.error.message || '';
-                        $scope.messages = 'Failed to query the conferences to attend : ' + errorMessage;
-                        $scope.alertStatus = 'warning';
-                        $log.error($scope.messages);
-
-                        if (resp.code && resp.code == HTTP_ERRORS.UNAUTHORIZED) {
-                            oauth2Provider.showLoginModal();
-                            return;
-                        }
-                    } else {
-                        // The request has succeeded.
-                        $scope.conferences = resp.result.items;
-                        $scope.loading = false;
-                        $scope.messages = 'Query succeeded : Conferences you will attend (or you have attended)';
-                        $scope.alertStatus = 'success';
-                        $log.info($scope.messages);
+                        $scope.nextPageToken = resp.nextPageToken || null;
                     }
                     $scope.submitted = true;
                 });
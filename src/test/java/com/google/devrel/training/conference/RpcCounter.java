@@ -0,0 +1,132 @@
+package com.google.devrel.training.conference;
+
+import static org.junit.Assert.fail;
+
+import com.google.apphosting.api.ApiProxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the RPCs to the local service stubs, so that tests can catch N+1 access patterns.
+ *
+ * Install it after LocalServiceTestHelper.setUp(), reset it before the call under test, and
+ * check the RPCs the call made afterwards:
+ *
+ * <pre>
+ * rpcCounter.reset();
+ * conferenceApi.queryConference(conferenceQueryForm);
+ * rpcCounter.assertDatastoreRpcsAtMost(3);
+ * </pre>
+ */
+public class RpcCounter implements ApiProxy.Delegate<ApiProxy.Environment> {
+
+    public static final String DATASTORE = "datastore_v3";
+
+    public static final String MEMCACHE = "memcache";
+
+    private final ApiProxy.Delegate<ApiProxy.Environment> delegate;
+
+    private final List<String> rpcs = Collections.synchronizedList(new ArrayList<String>());
+
+    private RpcCounter(ApiProxy.Delegate<ApiProxy.Environment> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Wraps the current API proxy delegate. LocalServiceTestHelper.tearDown() drops it again.
+     *
+     * @return the installed RpcCounter.
+     */
+    @SuppressWarnings("unchecked")
+    public static RpcCounter install() {
+        RpcCounter rpcCounter = new RpcCounter(ApiProxy.getDelegate());
+        ApiProxy.setDelegate(rpcCounter);
+        return rpcCounter;
+    }
+
+    /**
+     * Forgets the RPCs made so far.
+     */
+    public void reset() {
+        rpcs.clear();
+    }
+
+    /**
+     * @return the RPCs made since the last reset, as "package.method", in order.
+     */
+    public List<String> getRpcs() {
+        synchronized (rpcs) {
+            return new ArrayList<>(rpcs);
+        }
+    }
+
+    /**
+     * @param packageName the service, such as DATASTORE.
+     * @return the number of RPCs made to the service since the last reset.
+     */
+    public int count(String packageName) {
+        int count = 0;
+        for (String rpc : getRpcs()) {
+            if (rpc.startsWith(packageName + ".")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fails when more than max RPCs were made to a service since the last reset.
+     *
+     * @param packageName the service, such as DATASTORE.
+     * @param max the largest number of RPCs allowed.
+     */
+    public void assertRpcsAtMost(String packageName, int max) {
+        int count = count(packageName);
+        if (count > max) {
+            fail(String.format("Expected at most %d %s RPCs, but there were %d: %s", max,
+                    packageName, count, getRpcs()));
+        }
+    }
+
+    /**
+     * Fails when more than max datastore RPCs were made since the last reset.
+     *
+     * @param max the largest number of RPCs allowed.
+     */
+    public void assertDatastoreRpcsAtMost(int max) {
+        assertRpcsAtMost(DATASTORE, max);
+    }
+
+    @Override
+    public byte[] makeSyncCall(ApiProxy.Environment environment, String packageName,
+                               String methodName, byte[] request) {
+        rpcs.add(packageName + "." + methodName);
+        return delegate.makeSyncCall(environment, packageName, methodName, request);
+    }
+
+    @Override
+    public Future<byte[]> makeAsyncCall(ApiProxy.Environment environment, String packageName,
+                                        String methodName, byte[] request,
+                                        ApiProxy.ApiConfig apiConfig) {
+        rpcs.add(packageName + "." + methodName);
+        return delegate.makeAsyncCall(environment, packageName, methodName, request, apiConfig);
+    }
+
+    @Override
+    public void log(ApiProxy.Environment environment, ApiProxy.LogRecord record) {
+        delegate.log(environment, record);
+    }
+
+    @Override
+    public void flushLogs(ApiProxy.Environment environment) {
+        delegate.flushLogs(environment);
+    }
+
+    @Override
+    public List<Thread> getRequestThreads(ApiProxy.Environment environment) {
+        return delegate.getRequestThreads(environment);
+    }
+}
@@ -101,6 +101,14 @@ public class ConferenceTest {
         assertEquals(displayName, conference.getOrganizerDisplayName());
     }
 
+    @Test
+    public void testResolvedOrganizerDisplayName() throws Exception {
+        Conference conference = new Conference(ID, ORGANIZER_USER_ID, conferenceForm);
+        // No Profile is saved, so a lookup would fall back to the userId.
+        conference.setOrganizerDisplayName("Resolved Name");
+        assertEquals("Resolved Name", conference.getOrganizerDisplayName());
+    }
+
     @Test
     public void testBookSeats() throws Exception {
         Conference conference = new Conference(ID, ORGANIZER_USER_ID, conferenceForm);
@@ -1,10 +1,15 @@
 package com.google.devrel.training.conference.domain;
 
+import static com.google.devrel.training.conference.service.OfyService.ofy;
 import static org.junit.Assert.*;
 
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.google.devrel.training.conference.service.ProfileMigration;
 import com.googlecode.objectify.Key;
 
 import org.junit.After;
@@ -12,7 +17,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
 
 /**
  * Tests for Profile POJO.
@@ -41,6 +47,7 @@ public class ProfileTest {
 
     @After
     public void tearDown() throws Exception {
+        ofy().clear();
         helper.tearDown();
     }
 
@@ -63,15 +70,74 @@ public class ProfileTest {
         assertEquals(newTeeShirtSize, profile.getTeeShirtSize());
     }
 
-    /*
     @Test
-    public void testListValues() throws Exception {
-        List<String> conferenceKeys = new ArrayList<>();
-        assertEquals(conferenceKeys, profile.getConferenceKeysToAttend());
-        Key<Conference> conferenceKey = Key.create(Conference.class, 123L);
-        profile.addToConferenceKeysToAttend(conferenceKey.getString());
-        conferenceKeys.add(conferenceKey.getString());
-        assertEquals(conferenceKeys, profile.getConferenceKeysToAttend());
+    public void testConferencesToAttend() throws Exception {
+        assertTrue(profile.getConferencesToAttend().isEmpty());
+        Key<Profile> organizerKey = Key.create(Profile.class, "987654321");
+        Key<Conference> first = Key.create(organizerKey, Conference.class, 2L);
+        Key<Conference> second = Key.create(organizerKey, Conference.class, 1L);
+        profile.addToConferencesToAttend(first);
+        profile.addToConferencesToAttend(second);
+        assertTrue(profile.isRegisteredFor(first));
+        assertFalse(profile.isRegisteredFor(Key.create(organizerKey, Conference.class, 3L)));
+        assertEquals(Arrays.asList(first.getString(), second.getString()),
+                profile.getConferenceKeysToAttend());
+
+        // The registration order survives a round trip through the datastore.
+        ofy().save().entity(profile).now();
+        ofy().clear();
+        Profile loaded = ofy().load().key(Key.create(Profile.class, USER_ID)).now();
+        assertEquals(Arrays.asList(first, second),
+                new ArrayList<>(loaded.getConferencesToAttend()));
+
+        profile.unregisterFromConference(first);
+        assertFalse(profile.isRegisteredFor(first));
+        assertEquals(Arrays.asList(second.getString()), profile.getConferenceKeysToAttend());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnregisterWithoutRegistration() throws Exception {
+        profile.unregisterFromConference(Key.create(Conference.class, 123L));
+    }
+
+    @Test
+    public void testLegacyConferenceKeys() throws Exception {
+        Key<Profile> organizerKey = Key.create(Profile.class, "987654321");
+        Key<Conference> conferenceKey = Key.create(organizerKey, Conference.class, 123L);
+        // A Profile as stored by earlier versions.
+        Entity entity = new Entity("Profile", USER_ID);
+        entity.setProperty("displayName", DISPLAY_NAME);
+        entity.setProperty("mainEmail", EMAIL);
+        entity.setProperty("teeShirtSize", TEE_SHIRT_SIZE.name());
+        entity.setProperty("conferenceKeysToAttend", Arrays.asList(conferenceKey.getString()));
+        DatastoreServiceFactory.getDatastoreService().put(entity);
+
+        Profile loaded = ofy().load().key(Key.create(Profile.class, USER_ID)).now();
+        assertTrue(loaded.hasLegacyConferenceKeys());
+        assertTrue(loaded.isRegisteredFor(conferenceKey));
+
+        assertNull(ProfileMigration.migrateBatch(null));
+        ofy().clear();
+        Entity migrated = DatastoreServiceFactory.getDatastoreService().get(
+                Key.create(Profile.class, USER_ID).getRaw());
+        assertFalse(migrated.hasProperty("conferenceKeysToAttend"));
+        loaded = ofy().load().key(Key.create(Profile.class, USER_ID)).now();
+        assertFalse(loaded.hasLegacyConferenceKeys());
+        assertTrue(loaded.isRegisteredFor(conferenceKey));
+        assertEquals(DISPLAY_NAME, loaded.getDisplayName());
+    }
+
+    @Test
+    public void testLegacyConferenceKeysSkipsMalformedKeys() throws Exception {
+        Key<Profile> organizerKey = Key.create(Profile.class, "987654321");
+        Key<Conference> conferenceKey = Key.create(organizerKey, Conference.class, 123L);
+        Entity entity = new Entity("Profile", USER_ID);
+        entity.setProperty("displayName", DISPLAY_NAME);
+        entity.setProperty("conferenceKeysToAttend", Arrays.asList("not a key",
+                conferenceKey.getString()));
+        DatastoreServiceFactory.getDatastoreService().put(entity);
+
+        Profile loaded = ofy().load().key(Key.create(Profile.class, USER_ID)).now();
+        assertEquals(Collections.singleton(conferenceKey), loaded.getConferencesToAttend());
     }
-    */
 }
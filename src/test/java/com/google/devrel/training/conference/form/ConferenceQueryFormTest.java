@@ -0,0 +1,127 @@
+package com.google.devrel.training.conference.form;
+
+import static org.junit.Assert.*;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.Constants;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Filter;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Operator;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.QueryPlan;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+
+/**
+ * Tests for ConferenceQueryForm query planning.
+ */
+public class ConferenceQueryFormTest {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setDefaultHighRepJobPolicyUnappliedJobPercentage(100));
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        helper.tearDown();
+    }
+
+    @Test
+    public void testNoFilters() throws Exception {
+        QueryPlan queryPlan = new ConferenceQueryForm().getQueryPlan();
+        assertTrue(queryPlan.getPushedDownFilters().isEmpty());
+        assertFalse(queryPlan.hasResidualFilters());
+    }
+
+    @Test
+    public void testSingleInequalityFieldIsPushedDown() throws Exception {
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new Filter(Field.CITY, Operator.EQ, "London"))
+                .filter(new Filter(Field.MAX_ATTENDEES, Operator.GT, "10"))
+                .filter(new Filter(Field.MAX_ATTENDEES, Operator.LT, "100"));
+        QueryPlan queryPlan = conferenceQueryForm.getQueryPlan();
+        assertEquals(3, queryPlan.getPushedDownFilters().size());
+        assertFalse(queryPlan.hasResidualFilters());
+    }
+
+    @Test
+    public void testMostSelectiveInequalityFieldIsPushedDown() throws Exception {
+        Filter monthAfter = new Filter(Field.MONTH, Operator.GT, "3");
+        Filter monthBefore = new Filter(Field.MONTH, Operator.LT, "6");
+        Filter topic = new Filter(Field.TOPIC, Operator.NE, "Health");
+        Filter city = new Filter(Field.CITY, Operator.EQ, "London");
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm()
+                .filter(topic).filter(monthAfter).filter(city).filter(monthBefore);
+        QueryPlan queryPlan = conferenceQueryForm.getQueryPlan();
+        // A range on month narrows down more than != on topics.
+        assertEquals(Arrays.asList(monthAfter, city, monthBefore),
+                queryPlan.getPushedDownFilters());
+        assertEquals(Arrays.asList(topic), queryPlan.getResidualFilters());
+    }
+
+    @Test
+    public void testNotEqualIsAppliedInMemory() throws Exception {
+        Filter notEqual = new Filter(Field.MAX_ATTENDEES, Operator.NE, "12");
+        Filter city = new Filter(Field.CITY, Operator.EQ, "London");
+        QueryPlan queryPlan = new ConferenceQueryForm().filter(notEqual).filter(city)
+                .getQueryPlan();
+        assertEquals(Arrays.asList(city), queryPlan.getPushedDownFilters());
+        assertEquals(Arrays.asList(notEqual), queryPlan.getResidualFilters());
+    }
+
+    @Test
+    public void testResidualFilters() throws Exception {
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new Filter(Field.MAX_ATTENDEES, Operator.GT, "100"))
+                .filter(new Filter(Field.MONTH, Operator.LT, "6"))
+                .filter(new Filter(Field.TOPIC, Operator.GTEQ, "Platform"));
+        QueryPlan queryPlan = conferenceQueryForm.getQueryPlan();
+        assertEquals(conferenceQueryForm.getFilters().subList(2, 3),
+                queryPlan.getPushedDownFilters());
+        assertEquals(conferenceQueryForm.getFilters().subList(0, 2),
+                queryPlan.getResidualFilters());
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Conference march = new Conference(1L, "123456789", new ConferenceForm("March", null,
+                Arrays.asList("Cloud", "Platform"), null, dateFormat.parse("03/25/2014"), null,
+                500));
+        Conference july = new Conference(2L, "123456789", new ConferenceForm("July", null,
+                Arrays.asList("Cloud", "Platform"), null, dateFormat.parse("07/25/2014"), null,
+                500));
+        Conference small = new Conference(3L, "123456789", new ConferenceForm("Small", null,
+                Arrays.asList("Cloud"), null, dateFormat.parse("03/25/2014"), null, 50));
+        Conference otherTopics = new Conference(4L, "123456789", new ConferenceForm("Other",
+                null, Arrays.asList("Android", "Cloud"), null, dateFormat.parse("03/25/2014"),
+                null, 500));
+        // Topics is pushed down, month and maxAttendees are checked in memory.
+        assertTrue(queryPlan.apply(march));
+        assertFalse(queryPlan.apply(july));
+        assertFalse(queryPlan.apply(small));
+        assertTrue(queryPlan.apply(otherTopics));
+    }
+
+    @Test
+    public void testCanonicalForm() throws Exception {
+        ConferenceQueryForm first = new ConferenceQueryForm()
+                .filter(new Filter(Field.MONTH, Operator.EQ, "06"))
+                .filter(new Filter(Field.CITY, Operator.EQ, "London"));
+        ConferenceQueryForm second = new ConferenceQueryForm()
+                .filter(new Filter(Field.CITY, Operator.EQ, "London"))
+                .filter(new Filter(Field.MONTH, Operator.EQ, "6"));
+        second.setPageSize(Constants.DEFAULT_PAGE_SIZE);
+        assertEquals(first.getCanonicalForm(), second.getCanonicalForm());
+        second.setCursor("cursor");
+        assertFalse(first.getCanonicalForm().equals(second.getCanonicalForm()));
+    }
+}
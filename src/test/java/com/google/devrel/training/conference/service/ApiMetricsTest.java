@@ -0,0 +1,181 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.*;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.service.ApiMetrics.EndpointMetrics;
+import com.googlecode.objectify.Key;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Tests for ApiMetrics and MetricsDelegate.
+ */
+public class ApiMetricsTest {
+
+    private static final String ORGANIZER_USER_ID = "123456789";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setDefaultHighRepJobPolicyUnappliedJobPercentage(100),
+                    new LocalMemcacheServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        ApiMetrics.reset();
+        ApiMetrics.install();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ofy().clear();
+        ApiMetrics.reset();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testCountsDatastoreAndMemcache() throws Exception {
+        Key<Profile> profileKey = Key.create(Profile.class, ORGANIZER_USER_ID);
+        Conference conference = new Conference(1L, ORGANIZER_USER_ID, new ConferenceForm(
+                "GCP Live", null, null, null, null, null, 100));
+
+        ApiMetrics.Call call = ApiMetrics.start("getConference");
+        ofy().save().entity(conference).now();
+        ofy().clear();
+        // Misses the global cache and reads the datastore.
+        ofy().load().key(conference.getKey()).now();
+        ofy().clear();
+        // Served by the global cache.
+        ofy().load().key(conference.getKey()).now();
+        ofy().clear();
+        // Reads the key from the datastore and the Conference from the global cache.
+        assertEquals(1, ofy().load().type(Conference.class).ancestor(profileKey).list().size());
+        ofy().clear();
+        // SeatShards aren't cached, they are read from the datastore.
+        ofy().save().entities(SeatCounter.createShards(conference.getKey(), 100)).now();
+        ofy().clear();
+        assertEquals(SeatCounter.NUM_SHARDS,
+                ofy().load().keys(SeatCounter.getShardKeys(conference.getKey())).size());
+        call.finish(null);
+
+        List<EndpointMetrics> endpoints = ApiMetrics.getEndpoints();
+        assertEquals(1, endpoints.size());
+        EndpointMetrics metrics = endpoints.get(0);
+        assertEquals("getConference", metrics.getName());
+        assertEquals(1, metrics.getCalls());
+        assertEquals(0, metrics.getErrorCount());
+        assertEquals(1 + SeatCounter.NUM_SHARDS, metrics.getEntitiesWritten());
+        assertEquals(2 + SeatCounter.NUM_SHARDS, metrics.getEntitiesRead());
+        assertEquals(0, metrics.getEntitiesDeleted());
+        assertTrue(metrics.getDatastoreRpcs() >= 5);
+        assertEquals(metrics.getDatastoreRpcs(), metrics.getMaxDatastoreRpcs());
+        assertTrue(metrics.getMemcacheHits() >= 1);
+        assertTrue(metrics.getMemcacheMisses() >= 1);
+    }
+
+    @Test
+    public void testIgnoresCallsOutsideEndpoints() throws Exception {
+        ApiMetrics.Call call = ApiMetrics.start("getConference");
+        call.finish(null);
+        ofy().save().entity(new Conference(1L, ORGANIZER_USER_ID, new ConferenceForm(
+                "GCP Live", null, null, null, null, null, 100))).now();
+        EndpointMetrics metrics = ApiMetrics.getEndpoints().get(0);
+        assertEquals(0, metrics.getDatastoreRpcs());
+        assertEquals(0, metrics.getEntitiesWritten());
+    }
+
+    @Test
+    public void testErrorsAndLatency() throws Exception {
+        ApiMetrics.start("registerForConference").finish(null);
+        ApiMetrics.start("registerForConference").finish("ConflictException");
+        ApiMetrics.start("registerForConference").finish("ConflictException");
+        ApiMetrics.start("registerForConference").finish("NotFoundException");
+
+        EndpointMetrics metrics = ApiMetrics.getEndpoints().get(0);
+        assertEquals(4, metrics.getCalls());
+        assertEquals(3, metrics.getErrorCount());
+        assertEquals(Long.valueOf(2), metrics.getErrors().get("ConflictException"));
+        assertEquals(Long.valueOf(1), metrics.getErrors().get("NotFoundException"));
+        long buckets = 0;
+        for (long count : metrics.getLatencyBuckets()) {
+            buckets += count;
+        }
+        assertEquals(4, buckets);
+        assertTrue(metrics.getLatencyPercentileMillis(50)
+                <= metrics.getLatencyPercentileMillis(99));
+    }
+
+    @Test
+    public void testCountsTransactionRetries() throws Exception {
+        MetricsDelegate delegate = new MetricsDelegate(new ContendedCommitDelegate());
+        ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+        ApiMetrics.Call call = ApiMetrics.start("registerForConference");
+        try {
+            delegate.makeSyncCall(environment, "datastore_v3", "Commit", new byte[0]);
+            fail("The commit should have failed.");
+        } catch (ApiProxy.ApplicationException e) {
+            // Expected.
+        }
+        Future<byte[]> future = delegate.makeAsyncCall(environment, "datastore_v3", "Commit",
+                new byte[0], new ApiProxy.ApiConfig());
+        try {
+            future.get();
+            fail("The commit should have failed.");
+        } catch (Exception e) {
+            // Expected.
+        }
+        call.finish("ConflictException");
+
+        EndpointMetrics metrics = ApiMetrics.getEndpoints().get(0);
+        assertEquals(2, metrics.getTransactionRetries());
+        assertEquals(2, metrics.getDatastoreRpcs());
+    }
+
+    /**
+     * Fails every call the way the datastore fails a commit on contention.
+     */
+    private static class ContendedCommitDelegate
+            implements ApiProxy.Delegate<ApiProxy.Environment> {
+
+        @Override
+        public byte[] makeSyncCall(ApiProxy.Environment environment, String packageName,
+                                   String methodName, byte[] request) {
+            throw new ApiProxy.ApplicationException(MetricsDelegate.CONCURRENT_TRANSACTION);
+        }
+
+        @Override
+        public Future<byte[]> makeAsyncCall(ApiProxy.Environment environment,
+                String packageName, String methodName, byte[] request,
+                ApiProxy.ApiConfig apiConfig) {
+            SettableFuture<byte[]> future = SettableFuture.create();
+            future.setException(
+                    new ApiProxy.ApplicationException(MetricsDelegate.CONCURRENT_TRANSACTION));
+            return future;
+        }
+
+        @Override
+        public void log(ApiProxy.Environment environment, ApiProxy.LogRecord record) {}
+
+        @Override
+        public void flushLogs(ApiProxy.Environment environment) {}
+
+        @Override
+        public List<Thread> getRequestThreads(ApiProxy.Environment environment) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.*;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for ConferenceExporter.
+ */
+public class ConferenceExporterTest {
+
+    private static final String USER_ID = "123456789";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+                    new LocalMemcacheServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        ofy().save().entity(new Profile(USER_ID, "Organizer", "example@gmail.com",
+                TeeShirtSize.NOT_SPECIFIED)).now();
+        ofy().save().entities(
+                new Conference(1L, USER_ID, new ConferenceForm("GCP \"Live\"", "Cloud talks",
+                        Arrays.asList("Google", "Cloud"), "London", new Date(0L),
+                        new Date(86400000L), 100)),
+                new Conference(2L, USER_ID, new ConferenceForm("Dev Fest", null, null, null,
+                        null, null, 0))).now();
+        ofy().clear();
+
+        StringWriter writer = new StringWriter();
+        assertNull(ConferenceExporter.export(writer, null, Long.MAX_VALUE));
+        List<Map<String, Object>> lines = parseLines(writer.toString());
+        assertEquals(2, lines.size());
+        Map<String, Object> first = lines.get(0);
+        assertEquals("GCP \"Live\"", first.get("name"));
+        assertEquals(Arrays.asList("Google", "Cloud"), first.get("topics"));
+        assertEquals("1970-01-01T00:00:00.000Z", first.get("startDate"));
+        assertEquals("1970-01-02T00:00:00.000Z", first.get("endDate"));
+        assertEquals(new BigDecimal(100), first.get("seatsAvailable"));
+        assertEquals("Organizer", first.get("organizerDisplayName"));
+        Map<String, Object> second = lines.get(1);
+        assertEquals("Dev Fest", second.get("name"));
+        assertEquals(Arrays.asList("Default", "Topic"), second.get("topics"));
+        assertNull(second.get("startDate"));
+    }
+
+    @Test
+    public void testExportResumesFromCursor() throws Exception {
+        int count = ConferenceExporter.CHUNK_SIZE + 5;
+        List<Conference> conferences = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            conferences.add(new Conference(i, USER_ID, new ConferenceForm("Conference " + i,
+                    null, null, null, null, null, i)));
+        }
+        ofy().save().entities(conferences).now();
+        ofy().clear();
+
+        // Past the deadline, one chunk is written
+        StringWriter writer = new StringWriter();
+        String cursor = ConferenceExporter.export(writer, null, 0);
+        assertNotNull(cursor);
+        List<Map<String, Object>> lines = parseLines(writer.toString());
+        assertEquals(ConferenceExporter.CHUNK_SIZE, lines.size());
+
+        writer = new StringWriter();
+        assertNull(ConferenceExporter.export(writer, cursor, 0));
+        lines.addAll(parseLines(writer.toString()));
+        Set<Object> names = new HashSet<>();
+        for (Map<String, Object> line : lines) {
+            names.add(line.get("name"));
+        }
+        assertEquals(count, names.size());
+    }
+
+    @Test
+    public void testExportStopsAtMaxChars() throws Exception {
+        int count = ConferenceExporter.CHUNK_SIZE * 2 + 5;
+        List<Conference> conferences = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            conferences.add(new Conference(i, USER_ID, new ConferenceForm("Conference " + i,
+                    null, null, null, null, null, i)));
+        }
+        ofy().save().entities(conferences).now();
+        ofy().clear();
+
+        // Before the deadline, the first chunk uses up the characters
+        StringWriter writer = new StringWriter();
+        String cursor = ConferenceExporter.export(writer, null, Long.MAX_VALUE, 1);
+        assertNotNull(cursor);
+        assertEquals(ConferenceExporter.CHUNK_SIZE, parseLines(writer.toString()).size());
+
+        writer = new StringWriter();
+        assertNull(ConferenceExporter.export(writer, cursor, Long.MAX_VALUE));
+        assertEquals(ConferenceExporter.CHUNK_SIZE + 5, parseLines(writer.toString()).size());
+    }
+
+    private static List<Map<String, Object>> parseLines(String text) {
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(JsonLines.parseObject(line));
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,86 @@
+package com.google.devrel.training.conference.service;
+
+import static org.junit.Assert.*;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.googlecode.objectify.Key;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests for ConferenceIdPool.
+ */
+public class ConferenceIdPoolTest {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        // Ranges left over from other tests were allocated from another datastore.
+        ConferenceIdPool.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ConferenceIdPool.reset();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testKeysAreUniqueAcrossRanges() throws Exception {
+        Key<Profile> profileKey = Key.create(Profile.class, "123456789");
+        Set<Key<Conference>> keys = new HashSet<>();
+        int count = ConferenceIdPool.RANGE_SIZE * 3 + 1;
+        for (int i = 0; i < count; i++) {
+            Key<Conference> conferenceKey = ConferenceIdPool.nextKey(profileKey);
+            assertTrue(conferenceKey.getId() > 0);
+            assertTrue(keys.add(conferenceKey));
+        }
+        assertEquals(count, keys.size());
+    }
+
+    @Test
+    public void testKeysDontCollideWithAllocatedIds() throws Exception {
+        Key<Profile> profileKey = Key.create(Profile.class, "123456789");
+        Set<Key<Conference>> keys = new HashSet<>();
+        for (int i = 0; i < ConferenceIdPool.RANGE_SIZE * 2; i++) {
+            // Mixed with IDs allocated one at a time under the same Profile
+            assertTrue(keys.add(ConferenceIdPool.nextKey(profileKey)));
+            assertTrue(keys.add(OfyService.factory().allocateId(profileKey, Conference.class)));
+        }
+    }
+
+    @Test
+    public void testOrganizersHaveRangesOfTheirOwn() throws Exception {
+        Key<Profile> first = Key.create(Profile.class, "123456789");
+        Key<Profile> second = Key.create(Profile.class, "987654321");
+        Set<Key<Conference>> keys = new HashSet<>();
+        for (int i = 0; i < ConferenceIdPool.RANGE_SIZE + 1; i++) {
+            Key<Conference> firstKey = ConferenceIdPool.nextKey(first);
+            Key<Conference> secondKey = ConferenceIdPool.nextKey(second);
+            assertEquals(first, firstKey.getParent());
+            assertEquals(second, secondKey.getParent());
+            assertTrue(keys.add(firstKey));
+            assertTrue(keys.add(secondKey));
+        }
+    }
+
+    @Test
+    public void testNextKey() throws Exception {
+        Key<Profile> profileKey = Key.create(Profile.class, "123456789");
+        Key<Conference> conferenceKey = ConferenceIdPool.nextKey(profileKey);
+        assertEquals(profileKey, conferenceKey.getParent());
+        assertTrue(conferenceKey.getId() > 0);
+        assertNotEquals(conferenceKey, ConferenceIdPool.nextKey(profileKey));
+    }
+}
@@ -0,0 +1,181 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.*;
+
+import com.google.appengine.api.taskqueue.dev.QueueStateInfo.TaskStateInfo;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.service.ConferenceImporter.Format;
+import com.google.devrel.training.conference.service.ConferenceImporter.Report;
+import com.googlecode.objectify.Key;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for ConferenceImporter.
+ */
+public class ConferenceImporterTest {
+
+    private static final String USER_ID = "123456789";
+
+    private static final String EMAIL = "example@gmail.com";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setDefaultHighRepJobPolicyUnappliedJobPercentage(100),
+                    new LocalMemcacheServiceTestConfig(),
+                    new LocalTaskQueueTestConfig()
+                            .setQueueXmlPath("src/main/webapp/WEB-INF/queue.xml"));
+
+    private Key<Profile> profileKey;
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        profileKey = Key.create(Profile.class, USER_ID);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testImportCsv() throws Exception {
+        Report report = importRows(Format.CSV, true,
+                "name,city,topics,startDate,endDate,maxAttendees",
+                "GCP Live,London,Google;Cloud,2015-03-25,2015-03-26,100",
+                "",
+                "\"Dev, Fest\",Paris,,,,");
+
+        assertEquals(2, report.getImported());
+        assertEquals(0, report.getQueued());
+        assertEquals(0, report.getErrorCount());
+        List<Conference> conferences = ofy().load().type(Conference.class)
+                .ancestor(profileKey).order("name").list();
+        assertEquals(2, conferences.size());
+        assertEquals("Dev, Fest", conferences.get(0).getName());
+        assertEquals("Paris", conferences.get(0).getCity());
+        assertEquals(0, conferences.get(0).getMaxAttendees());
+        assertEquals("GCP Live", conferences.get(1).getName());
+        assertEquals(Arrays.asList("Google", "Cloud"), conferences.get(1).getTopics());
+        assertEquals(100, conferences.get(1).getSeatsAvailable());
+        assertEquals(USER_ID, conferences.get(1).getOrganizerUserId());
+        // The organizer gets a Profile, and an e-mail per Conference
+        assertEquals(EMAIL, ofy().load().key(profileKey).now().getMainEmail());
+        assertEquals(2, getTasks("email").size());
+    }
+
+    @Test
+    public void testImportNdjsonReportsInvalidRows() throws Exception {
+        Report report = importRows(Format.NDJSON, false,
+                "{\"name\": \"GCP Live\", \"topics\": [\"Google\"], \"maxAttendees\": 100}",
+                "{\"city\": \"London\"}",
+                "{\"name\": \"Dev Fest\", \"startDate\": \"2015-03-26\","
+                        + " \"endDate\": \"2015-03-25\"}",
+                "{\"name\": \"Dev Fest\", \"maxAttendees\": -1}",
+                "{\"name\": \"Dev Fest\", \"startDate\": \"March\"}",
+                "{\"name\": \"Dev Fest\"",
+                "{\"name\": \"I/O\", \"maxAttendees\": 5000}");
+
+        assertEquals(2, report.getImported());
+        assertEquals(5, report.getErrorCount());
+        int[] lines = new int[report.getErrors().size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = report.getErrors().get(i).getLine();
+        }
+        assertArrayEquals(new int[] {2, 3, 4, 5, 6}, lines);
+        assertEquals("name is required", report.getErrors().get(0).getMessage());
+        assertEquals(2, ofy().load().type(Conference.class).ancestor(profileKey).list().size());
+        assertTrue(getTasks("email").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testImportCsvWithUnknownColumn() throws Exception {
+        importRows(Format.CSV, false, "name,venue", "GCP Live,Moscone");
+    }
+
+    @Test
+    public void testImportPastDeadlineQueuesBatches() throws Exception {
+        String[] rows = new String[ConferenceImporter.BATCH_SIZE + 11];
+        rows[0] = "name,maxAttendees";
+        for (int i = 1; i < rows.length; i++) {
+            rows[i] = "Conference " + i + "," + i;
+        }
+        Report report = ConferenceImporter.importRows(read(rows), Format.CSV, USER_ID, EMAIL,
+                false, 0);
+
+        assertEquals(0, report.getImported());
+        assertEquals(rows.length - 1, report.getQueued());
+        assertTrue(ofy().load().type(Conference.class).ancestor(profileKey).list().isEmpty());
+        List<TaskStateInfo> tasks = getTasks("default");
+        assertEquals(2, tasks.size());
+
+        // Running the tasks, one of them twice, writes each Conference once
+        for (TaskStateInfo task : tasks) {
+            runTask(task);
+        }
+        runTask(tasks.get(0));
+        ofy().clear();
+        List<Conference> conferences = ofy().load().type(Conference.class)
+                .ancestor(profileKey).list();
+        assertEquals(rows.length - 1, conferences.size());
+    }
+
+    @Test
+    public void testParseCsvLine() throws Exception {
+        assertEquals(Arrays.asList("a", "b, \"c\"", ""),
+                ConferenceImporter.parseCsvLine("a,\"b, \"\"c\"\"\","));
+    }
+
+    private Report importRows(Format format, boolean sendEmails, String... rows)
+            throws Exception {
+        return ConferenceImporter.importRows(read(rows), format, USER_ID, EMAIL, sendEmails,
+                Long.MAX_VALUE);
+    }
+
+    private static BufferedReader read(String... rows) {
+        StringBuilder text = new StringBuilder();
+        for (String row : rows) {
+            text.append(row).append('\n');
+        }
+        return new BufferedReader(new StringReader(text.toString()));
+    }
+
+    private static List<TaskStateInfo> getTasks(String queueName) {
+        return LocalTaskQueueTestConfig.getLocalTaskQueue().getQueueStateInfo().get(queueName)
+                .getTaskInfo();
+    }
+
+    /**
+     * Does what ImportConferencesTaskServlet does with a task.
+     */
+    private static void runTask(TaskStateInfo task) throws Exception {
+        String url = task.getUrl();
+        Map<String, String> params = new HashMap<>();
+        for (String param : url.substring(url.indexOf('?') + 1).split("&")) {
+            String[] pair = param.split("=", 2);
+            params.put(pair[0], URLDecoder.decode(pair[1], "UTF-8"));
+        }
+        ConferenceImporter.importBatch(task.getBody(),
+                Format.valueOf(params.get("format")), params.get("organizerUserId"),
+                Long.parseLong(params.get("firstId")),
+                Boolean.parseBoolean(params.get("sendEmails")));
+    }
+}
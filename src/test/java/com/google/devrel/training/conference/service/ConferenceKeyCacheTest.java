@@ -0,0 +1,47 @@
+package com.google.devrel.training.conference.service;
+
+import static org.junit.Assert.*;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.googlecode.objectify.Key;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for ConferenceKeyCache.
+ */
+public class ConferenceKeyCacheTest {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        helper.tearDown();
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        Key<Conference> conferenceKey = Key.create(Key.create(Profile.class, "123456789"),
+                Conference.class, 123L);
+        Key<Conference> parsed = ConferenceKeyCache.parse(conferenceKey.getString());
+        assertEquals(conferenceKey, parsed);
+        // Parsed once.
+        assertSame(parsed, ConferenceKeyCache.parse(conferenceKey.getString()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMalformedKey() throws Exception {
+        ConferenceKeyCache.parse("not a key");
+    }
+}
@@ -0,0 +1,131 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.*;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.form.ConferenceForm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for ConferenceSearch, with both stores.
+ */
+public class ConferenceSearchTest {
+
+    private static final String USER_ID = "123456789";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+                    new LocalMemcacheServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        ConferenceSearch.setStore(new InMemorySearchIndexStore());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ConferenceSearch.setStore(new DatastoreSearchIndexStore());
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testTokenize() throws Exception {
+        assertEquals(Arrays.asList("kubernetes", "docker", "gcp", "2015", "live"),
+                ConferenceSearch.tokenize("Kubernetes & Docker at GCP-2015: a (live)"));
+        assertTrue(ConferenceSearch.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void testRanking() throws Exception {
+        Conference inName = index(1, "Kubernetes Live", null);
+        Conference inDescription = index(2, "Cloud Summit", "Kubernetes and more Kubernetes");
+        Conference both = index(3, "Docker Days", "Kubernetes with Docker");
+        index(4, "Android Dev", "Nothing to see");
+
+        assertEquals(keys(inName, inDescription, both),
+                ConferenceSearch.search("kubernetes", null, 10).getWebsafeKeys());
+        // Matching more of the terms comes first
+        assertEquals(keys(both, inName, inDescription),
+                ConferenceSearch.search("KUBERNETES docker", null, 10).getWebsafeKeys());
+        assertTrue(ConferenceSearch.search("the", null, 10).getWebsafeKeys().isEmpty());
+        assertTrue(ConferenceSearch.search("golang", null, 10).getWebsafeKeys().isEmpty());
+    }
+
+    @Test
+    public void testPaging() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            // More occurrences rank higher
+            StringBuilder description = new StringBuilder();
+            for (int j = 0; j < 10 - i; j++) {
+                description.append("cloud ");
+            }
+            expected.add(index(i, "Conference " + i, description.toString()).getWebsafeKey());
+        }
+        List<String> found = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ConferenceSearch.Page page = ConferenceSearch.search("cloud", cursor, 3);
+            found.addAll(page.getWebsafeKeys());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(3, pages);
+        assertEquals(expected, found);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCursor() throws Exception {
+        ConferenceSearch.search("cloud", "abc", 10);
+    }
+
+    @Test
+    public void testDatastoreStore() throws Exception {
+        ConferenceSearch.setStore(new DatastoreSearchIndexStore());
+        Conference conference = index(1, "Kubernetes Live", "Containers in production");
+        index(2, "Cloud Summit", "More containers");
+        assertEquals(keys(conference),
+                ConferenceSearch.search("kubernetes", null, 10).getWebsafeKeys());
+        assertEquals(2, ConferenceSearch.search("containers", null, 10).getWebsafeKeys()
+                .size());
+
+        // Reindexing drops the old terms
+        conference.updateWithConferenceForm(new ConferenceForm("Docker Live", null, null, null,
+                null, null, 0));
+        ofy().save().entity(conference).now();
+        ConferenceSearch.reindex(conference);
+        assertTrue(ConferenceSearch.search("kubernetes", null, 10).getWebsafeKeys().isEmpty());
+        assertEquals(keys(conference),
+                ConferenceSearch.search("docker", null, 10).getWebsafeKeys());
+    }
+
+    private static Conference index(long id, String name, String description) {
+        Conference conference = new Conference(id, USER_ID, new ConferenceForm(name,
+                description, null, null, null, null, 0));
+        ofy().save().entity(conference).now();
+        ConferenceSearch.index(conference);
+        return conference;
+    }
+
+    private static List<String> keys(Conference... conferences) {
+        List<String> keys = new ArrayList<>();
+        for (Conference conference : conferences) {
+            keys.add(conference.getWebsafeKey());
+        }
+        return keys;
+    }
+}
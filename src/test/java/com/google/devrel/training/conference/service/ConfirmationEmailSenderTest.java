@@ -0,0 +1,75 @@
+package com.google.devrel.training.conference.service;
+
+import static org.junit.Assert.*;
+
+import com.google.appengine.api.mail.MailServicePb.MailMessage;
+import com.google.appengine.api.mail.dev.LocalMailService;
+import com.google.appengine.tools.development.testing.LocalMailServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests for ConfirmationEmailSender, against the local mail service.
+ */
+public class ConfirmationEmailSenderTest {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalTaskQueueTestConfig()
+                    .setQueueXmlPath("src/main/webapp/WEB-INF/queue.xml"),
+                    new LocalMailServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        helper.tearDown();
+    }
+
+    @Test
+    public void testSendBatch() throws Exception {
+        int count = ConfirmationEmailSender.BATCH_SIZE + 5;
+        for (int i = 0; i < count; i++) {
+            ConfirmationEmailSender.getQueue().add(ConfirmationEmailSender.createTask(
+                    "organizer" + i + "@gmail.com", "Conference " + i));
+        }
+        // Leases a full batch, then the rest.
+        assertEquals(ConfirmationEmailSender.BATCH_SIZE, ConfirmationEmailSender.sendBatch());
+        assertEquals(5, ConfirmationEmailSender.sendBatch());
+        assertEquals(0, ConfirmationEmailSender.sendBatch());
+
+        LocalMailService mailService = LocalMailServiceTestConfig.getLocalMailService();
+        assertEquals(count, mailService.getSentMessages().size());
+        Set<String> recipients = new HashSet<>();
+        for (MailMessage message : mailService.getSentMessages()) {
+            assertEquals("You created a new Conference!", message.getSubject());
+            recipients.add(message.getTo(0));
+        }
+        assertEquals(count, recipients.size());
+        assertTrue(recipients.contains("organizer0@gmail.com"));
+    }
+
+    @Test
+    public void testMalformedAddressIsDropped() throws Exception {
+        ConfirmationEmailSender.getQueue().add(ConfirmationEmailSender.createTask(
+                "not an address", "Conference"));
+        ConfirmationEmailSender.getQueue().add(ConfirmationEmailSender.createTask(
+                "organizer@gmail.com", "Conference"));
+        assertEquals(2, ConfirmationEmailSender.sendBatch());
+        // The bad one is deleted rather than left to its lease, and doesn't keep the good one
+        // from being sent.
+        assertEquals(0, LocalTaskQueueTestConfig.getLocalTaskQueue().getQueueStateInfo()
+                .get(ConfirmationEmailSender.getQueue().getQueueName()).getCountTasks());
+        assertEquals(1,
+                LocalMailServiceTestConfig.getLocalMailService().getSentMessages().size());
+    }
+}
@@ -0,0 +1,132 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.*;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.FacetShard;
+import com.google.devrel.training.conference.domain.Facets;
+import com.google.devrel.training.conference.domain.Facets.FacetCount;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for FacetCounter.
+ */
+public class FacetCounterTest {
+
+    private static final String USER_ID = "123456789";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setDefaultHighRepJobPolicyUnappliedJobPercentage(100),
+                    new LocalMemcacheServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testCountsAcrossShards() throws Exception {
+        for (int i = 1; i <= 30; i++) {
+            addConference(i, i % 3 == 0 ? "London" : "Paris", 10);
+        }
+        Facets facets = FacetCounter.getFacets();
+        assertCount(facets.getCities().get(0), "Paris", 20, 200);
+        assertCount(facets.getCities().get(1), "London", 10, 100);
+        assertCount(facets.getTopics().get(0), "Google", 30, 300);
+        assertTrue(facets.getMonths().isEmpty());
+    }
+
+    @Test
+    public void testConferenceWithoutCity() throws Exception {
+        // Stored without a city, which the ConferenceForm constructor would default
+        Entity entity = new Entity(Key.create(Key.create(Profile.class, USER_ID),
+                Conference.class, 1L).getRaw());
+        entity.setProperty("name", "Conference 1");
+        entity.setProperty("maxAttendees", 10);
+        DatastoreServiceFactory.getDatastoreService().put(entity);
+        final Conference conference = ofy().load().type(Conference.class)
+                .parent(Key.create(Profile.class, USER_ID)).id(1L).now();
+        assertNull(conference.getCity());
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                FacetCounter.conferencesAdded(Collections.singletonList(conference));
+            }
+        });
+        addConference(2, "London", 20);
+
+        Facets facets = FacetCounter.getFacets();
+        assertEquals(1, facets.getCities().size());
+        assertCount(facets.getCities().get(0), "London", 1, 20);
+    }
+
+    @Test
+    public void testReconcileRepairsCounts() throws Exception {
+        addConference(1, "London", 10);
+        addConference(2, "Paris", 20);
+        // A Conference that wasn't counted, and a count that drifted
+        ofy().save().entity(new Conference(3, USER_ID, new ConferenceForm("Conference 3", null,
+                null, "Paris", null, null, 30))).now();
+        FacetShard shard = new FacetShard(FacetCounter.NUM_SHARDS - 1);
+        shard.add("city:Berlin", 5, 5);
+        ofy().save().entity(shard).now();
+
+        // Applies the writes, so that the global query of the reconciliation sees them
+        assertEquals(3, ofy().load().type(Conference.class)
+                .ancestor(Key.create(Profile.class, USER_ID)).list().size());
+        ofy().clear();
+
+        FacetCounter.reconcile();
+        ofy().clear();
+        MemcacheServiceFactory.getMemcacheService().clearAll();
+        List<FacetCount> cities = FacetCounter.getFacets().getCities();
+        assertEquals(2, cities.size());
+        assertCount(cities.get(0), "Paris", 2, 50);
+        assertCount(cities.get(1), "London", 1, 10);
+    }
+
+    private static void addConference(long id, String city, int maxAttendees) {
+        final Conference conference = new Conference(id, USER_ID, new ConferenceForm(
+                "Conference " + id, null, Arrays.asList("Google"), city, null, null,
+                maxAttendees));
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                ofy().save().entity(conference).now();
+                FacetCounter.conferencesAdded(Collections.singletonList(conference));
+            }
+        });
+    }
+
+    private static void assertCount(FacetCount count, String value, long conferences,
+                                    long seats) {
+        assertEquals(value, count.getValue());
+        assertEquals(conferences, count.getConferences());
+        assertEquals(seats, count.getSeats());
+    }
+}
@@ -0,0 +1,14 @@
+package com.google.devrel.training.conference.service;
+
+/**
+ * Clears the per-instance caches of the services, which outlive the local services of a test.
+ */
+public class InstanceCaches {
+
+    private InstanceCaches() {}
+
+    public static void reset() {
+        AnnouncementCache.reset();
+        QueryResultCache.reset();
+    }
+}
@@ -0,0 +1,53 @@
+package com.google.devrel.training.conference.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Tests for JsonLines.
+ */
+public class JsonLinesTest {
+
+    @Test
+    public void testParseObject() throws Exception {
+        Map<String, Object> object = JsonLines.parseObject(
+                " {\"name\": \"GCP \\\"Live\\\" \\u00e9\", \"topics\": [\"Google\", \"Cloud\"],"
+                        + " \"maxAttendees\": 100, \"online\": false, \"city\": null,"
+                        + " \"venue\": {}} ");
+        assertEquals("GCP \"Live\" \u00e9", object.get("name"));
+        assertEquals(Arrays.asList("Google", "Cloud"), object.get("topics"));
+        assertEquals(new BigDecimal(100), object.get("maxAttendees"));
+        assertEquals(Boolean.FALSE, object.get("online"));
+        assertTrue(object.containsKey("city"));
+        assertNull(object.get("city"));
+        assertEquals(Collections.emptyMap(), object.get("venue"));
+    }
+
+    @Test
+    public void testParseObjectErrors() throws Exception {
+        for (String line : Arrays.asList("[]", "{\"name\" \"GCP\"}", "{\"name\": \"GCP\"",
+                "{\"name\": \"GCP\"} x", "{\"name\": tru}")) {
+            try {
+                JsonLines.parseObject(line);
+                fail("Parsed " + line);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" at column "));
+            }
+        }
+    }
+
+    @Test
+    public void testQuote() throws Exception {
+        String value = "a \"b\"\\\n\u0001";
+        assertEquals("\"a \\\"b\\\"\\\\\\n\\u0001\"", JsonLines.quote(value));
+        assertEquals(value, JsonLines.parseObject("{\"v\": " + JsonLines.quote(value) + "}")
+                .get("v"));
+        assertEquals("null", JsonLines.quote(null));
+    }
+}
@@ -0,0 +1,61 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.*;
+
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.googlecode.objectify.Key;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for NearlySoldOutTracker.
+ */
+public class NearlySoldOutTrackerTest {
+
+    private static final String USER_ID = "123456789";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+                    new LocalMemcacheServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        AnnouncementCache.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ofy().clear();
+        AnnouncementCache.reset();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testRebuildsEvictedSetFromDatastore() throws Exception {
+        Conference nearlySoldOut = new Conference(1L, USER_ID, new ConferenceForm("Alpha", null,
+                null, null, null, null, NearlySoldOutTracker.MAX_SEATS));
+        Conference other = new Conference(2L, USER_ID, new ConferenceForm("Beta", null, null,
+                null, null, null, 100));
+        ofy().save().entities(nearlySoldOut, other).now();
+        // Applies the writes, so that the global query sees them
+        ofy().load().type(Conference.class).ancestor(Key.create(Profile.class, USER_ID)).list();
+
+        NearlySoldOutTracker.reconcile(NearlySoldOutTracker.loadFromDatastore());
+        assertTrue(AnnouncementCache.get().getMessage().endsWith("Alpha"));
+
+        // Evicted, then another Conference enters the band
+        MemcacheServiceFactory.getMemcacheService().clearAll();
+        NearlySoldOutTracker.seatsChanged(other, NearlySoldOutTracker.MIN_SEATS);
+        assertTrue(AnnouncementCache.get().getMessage().endsWith("Alpha, Beta"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.google.devrel.training.conference.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for PrefixIndex.
+ */
+public class PrefixIndexTest {
+
+    @Test
+    public void testComplete() throws Exception {
+        Map<String, Long> weights = new HashMap<>();
+        weights.put("San Francisco", 5L);
+        weights.put("San Jose", 2L);
+        weights.put("Santiago", 5L);
+        weights.put("Sao Paulo", 9L);
+        weights.put("London", 3L);
+        weights.put("Nowhere", 0L);
+        PrefixIndex index = PrefixIndex.of(weights);
+
+        assertEquals(5, index.size());
+        assertEquals(Arrays.asList("San Francisco", "Santiago", "San Jose"),
+                index.complete("san", 10));
+        assertEquals(Arrays.asList("Sao Paulo", "San Francisco"), index.complete("S", 2));
+        assertEquals(Arrays.asList("London"), index.complete("LONDON", 10));
+        assertTrue(index.complete("Paris", 10).isEmpty());
+        assertEquals(5, index.complete("", 10).size());
+        assertTrue(PrefixIndex.EMPTY.complete("s", 10).isEmpty());
+    }
+
+    @Test
+    public void testPlus() throws Exception {
+        PrefixIndex index = PrefixIndex.EMPTY.plus("Paris", 1).plus("paris", 2).plus("Berlin", 1)
+                .plus("Paris", 2).plus("Zurich", 1);
+        assertEquals(4, index.size());
+        assertEquals(Arrays.asList("Paris", "paris"), index.complete("par", 10));
+        assertEquals(Arrays.asList("Paris", "paris", "Berlin", "Zurich"),
+                index.complete("", 10));
+        // The index the values were added to is unchanged
+        assertTrue(PrefixIndex.EMPTY.complete("", 10).isEmpty());
+    }
+}
@@ -0,0 +1,59 @@
+package com.google.devrel.training.conference.service;
+
+import static org.junit.Assert.*;
+
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.RpcCounter;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.service.QueryResultCache.CachedPage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * Tests for QueryResultCache.
+ */
+public class QueryResultCacheTest {
+
+    private static final String QUERY = "city=London;pageSize=20";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalMemcacheServiceTestConfig());
+
+    private RpcCounter rpcCounter;
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        QueryResultCache.reset();
+        rpcCounter = RpcCounter.install();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        QueryResultCache.reset();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testLocalHitSkipsMemcache() throws Exception {
+        QueryResultCache.put(QUERY, new CachedPage(Collections.<Conference>emptyList(), "next"));
+
+        rpcCounter.reset();
+        CachedPage page = QueryResultCache.get(QUERY);
+        assertNotNull(page);
+        assertEquals("next", page.getNextPageToken());
+        rpcCounter.assertRpcsAtMost(RpcCounter.MEMCACHE, 0);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        QueryResultCache.put(QUERY, new CachedPage(Collections.<Conference>emptyList(), "next"));
+        QueryResultCache.invalidate();
+        assertNull(QueryResultCache.get(QUERY));
+    }
+}
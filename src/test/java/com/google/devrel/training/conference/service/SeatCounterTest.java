@@ -0,0 +1,94 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.*;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.googlecode.objectify.Key;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for SeatCounter.
+ */
+public class SeatCounterTest {
+
+    private static final long ID = 123456L;
+
+    private static final String ORGANIZER_USER_ID = "123456789";
+
+    private static final int CAP = 53;
+
+    private Conference conference;
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setDefaultHighRepJobPolicyUnappliedJobPercentage(100),
+                    new LocalMemcacheServiceTestConfig());
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        conference = new Conference(ID, ORGANIZER_USER_ID, new ConferenceForm(
+                "GCP Live", null, null, null, null, null, CAP));
+        ofy().save().entity(conference).now();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testCreateShards() throws Exception {
+        List<SeatShard> shards = SeatCounter.createShards(conference.getKey(), CAP);
+        assertEquals(SeatCounter.NUM_SHARDS, shards.size());
+        int total = 0;
+        for (SeatShard shard : shards) {
+            // Seats are spread evenly.
+            assertTrue(shard.getSeatsAvailable() >= CAP / SeatCounter.NUM_SHARDS);
+            assertTrue(shard.getSeatsAvailable() <= CAP / SeatCounter.NUM_SHARDS + 1);
+            total += shard.getSeatsAvailable();
+        }
+        assertEquals(CAP, total);
+    }
+
+    @Test
+    public void testEnsureShards() throws Exception {
+        assertNull(SeatCounter.sumShards(conference.getKey()));
+        assertEquals(CAP, SeatCounter.getSeatsAvailable(conference));
+        SeatCounter.ensureShards(conference.getKey());
+        assertEquals(Integer.valueOf(CAP), SeatCounter.sumShards(conference.getKey()));
+        // Existing shards are left alone.
+        Key<SeatShard> shardKey = SeatShard.createKey(conference.getKey(), 0);
+        SeatShard shard = ofy().load().key(shardKey).now();
+        shard.bookSeats(1);
+        ofy().save().entity(shard).now();
+        SeatCounter.ensureShards(conference.getKey());
+        assertEquals(Integer.valueOf(CAP - 1), SeatCounter.sumShards(conference.getKey()));
+    }
+
+    @Test
+    public void testRollup() throws Exception {
+        SeatCounter.ensureShards(conference.getKey());
+        for (Key<SeatShard> shardKey : SeatCounter.getShardKeysWithSeats(conference.getKey())) {
+            SeatShard shard = ofy().load().key(shardKey).now();
+            shard.bookSeats(1);
+            ofy().save().entity(shard).now();
+        }
+        SeatCounter.rollup(conference.getKey());
+        ofy().clear();
+        Conference rolledUp = ofy().load().key(conference.getKey()).now();
+        assertEquals(CAP - SeatCounter.NUM_SHARDS, rolledUp.getSeatsAvailable());
+    }
+}
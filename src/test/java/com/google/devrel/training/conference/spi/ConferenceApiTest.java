@@ -3,17 +3,35 @@ package com.google.devrel.training.conference.spi;
 import static com.google.devrel.training.conference.service.OfyService.ofy;
 import static org.junit.Assert.*;
 
+import com.google.api.server.spi.response.BadRequestException;
+import com.google.api.server.spi.response.CollectionResponse;
+import com.google.api.server.spi.response.ConflictException;
+import com.google.api.server.spi.response.ForbiddenException;
 import com.google.api.server.spi.response.UnauthorizedException;
 import com.google.appengine.api.users.User;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.devrel.training.conference.RpcCounter;
 import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ConferenceSummary;
+import com.google.devrel.training.conference.domain.Dashboard;
+import com.google.devrel.training.conference.domain.Facets;
+import com.google.devrel.training.conference.domain.Facets.FacetCount;
+import com.google.devrel.training.conference.domain.GroupRegistration;
 // import com.google.devrel.training.conference.domain.Conference;
 import com.google.devrel.training.conference.domain.Profile;
 import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.GroupRegistrationForm;
 // import com.google.devrel.training.conference.form.ConferenceForm;
 import com.google.devrel.training.conference.form.ProfileForm;
 import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.google.devrel.training.conference.service.AnnouncementCache;
+import com.google.devrel.training.conference.service.Autocomplete;
+import com.google.devrel.training.conference.service.GroupRegistrar;
+import com.google.devrel.training.conference.service.InstanceCaches;
+import com.google.devrel.training.conference.service.OrganizerRenamer;
 import com.googlecode.objectify.Key;
 
 import org.junit.After;
@@ -23,8 +41,13 @@ import org.junit.Test;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Tests for ConferenceApi API methods.
@@ -53,13 +76,20 @@ public class ConferenceApiTest {
 
     private ConferenceApi conferenceApi;
 
+    private RpcCounter rpcCounter;
+
     private final LocalServiceTestHelper helper =
             new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
-                    .setDefaultHighRepJobPolicyUnappliedJobPercentage(100));
+                    .setDefaultHighRepJobPolicyUnappliedJobPercentage(100),
+                    new LocalTaskQueueTestConfig()
+                            .setQueueXmlPath("src/main/webapp/WEB-INF/queue.xml"));
 
     @Before
     public void setUp() throws Exception {
         helper.setUp();
+        // Cached values from other tests refer to another datastore and memcache.
+        InstanceCaches.reset();
+        rpcCounter = RpcCounter.install();
         user = new User(EMAIL, "gmail.com", USER_ID);
         conferenceApi = new ConferenceApi();
     }
@@ -67,6 +97,7 @@ public class ConferenceApiTest {
     @After
     public void tearDown() throws Exception {
         ofy().clear();
+        InstanceCaches.reset();
         helper.tearDown();
     }
 
@@ -170,6 +201,33 @@ public class ConferenceApiTest {
         assertEquals(DISPLAY_NAME, profile.getDisplayName());
     }
 
+    @Test
+    public void testRenameOrganizer() throws Exception {
+        conferenceApi.saveProfile(user, new ProfileForm(DISPLAY_NAME, TEE_SHIRT_SIZE));
+        Conference conference = conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, null, CITY, null, null, CAP));
+        assertTrue(conference.hasOrganizerDisplayName());
+        assertEquals(DISPLAY_NAME, conference.getOrganizerDisplayName());
+
+        String newDisplayName = "New Name";
+        conferenceApi.saveProfile(user, new ProfileForm(newDisplayName, null));
+        // Until the task runs, the Conference keeps the old name.
+        ofy().clear();
+        assertEquals(DISPLAY_NAME, ofy().load().key(conference.getKey()).now()
+                .getOrganizerDisplayName());
+
+        assertEquals(1, OrganizerRenamer.renameBatch(USER_ID, null));
+        ofy().clear();
+        rpcCounter.reset();
+        conference = ofy().load().key(conference.getKey()).now();
+        assertEquals(newDisplayName, conference.getOrganizerDisplayName());
+        // Stored on the Conference, not read from the Profile.
+        rpcCounter.assertDatastoreRpcsAtMost(1);
+
+        // Running the task again changes nothing.
+        assertEquals(0, OrganizerRenamer.renameBatch(USER_ID, null));
+    }
+
 
     
     @Test
@@ -218,10 +276,13 @@ public class ConferenceApiTest {
                 NAME, DESCRIPTION, topics, CITY, startDate, endDate, CAP);
         Conference conference = conferenceApi.createConference(user, conferenceForm);
 
-        List<Conference> conferencesCreated = conferenceApi.getConferencesCreated(user);
+        List<Conference> conferencesCreated = new ArrayList<>(
+                conferenceApi.getConferencesCreated(user, null, null).getItems());
         assertEquals(1, conferencesCreated.size());
         assertTrue("The result should contain a conference",
                 conferencesCreated.contains(conference));
+        String displayName = EMAIL.substring(0, EMAIL.indexOf("@"));
+        assertEquals(displayName, conferencesCreated.get(0).getOrganizerDisplayName());
     }
 
     
@@ -286,4 +347,694 @@ public class ConferenceApiTest {
         assertFalse("Profile shouldn't have the conferenceId in conferenceIdsToAttend.",
                 profile.getConferenceKeysToAttend().contains(conference.getWebsafeKey()));
     }
+
+    @Test
+    public void testGetConferencesToAttend() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        List<String> topics = new ArrayList<>();
+        topics.add("Google");
+        topics.add("Cloud");
+        topics.add("Platform");
+        Conference first = conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, topics, CITY, startDate, endDate, CAP));
+        Conference second = conferenceApi.createConference(user, new ConferenceForm(
+                "Second " + NAME, DESCRIPTION, topics, CITY, startDate, endDate, CAP));
+        Conference third = conferenceApi.createConference(user, new ConferenceForm(
+                "Third " + NAME, DESCRIPTION, topics, CITY, startDate, endDate, CAP));
+        conferenceApi.registerForConference(user, third.getWebsafeKey());
+        conferenceApi.registerForConference(user, first.getWebsafeKey());
+        conferenceApi.registerForConference(user, second.getWebsafeKey());
+
+        // Registration order is preserved.
+        List<Conference> conferencesToAttend =
+                new ArrayList<>(conferenceApi.getConferencesToAttend(user));
+        assertEquals(3, conferencesToAttend.size());
+        assertEquals(third.getWebsafeKey(), conferencesToAttend.get(0).getWebsafeKey());
+        assertEquals(first.getWebsafeKey(), conferencesToAttend.get(1).getWebsafeKey());
+        assertEquals(second.getWebsafeKey(), conferencesToAttend.get(2).getWebsafeKey());
+
+        // A deleted conference is skipped instead of failing the whole call.
+        ofy().delete().key(Key.<Conference>create(first.getWebsafeKey())).now();
+        ofy().clear();
+        conferencesToAttend = new ArrayList<>(conferenceApi.getConferencesToAttend(user));
+        assertEquals(2, conferencesToAttend.size());
+        assertEquals(third.getWebsafeKey(), conferencesToAttend.get(0).getWebsafeKey());
+        assertEquals(second.getWebsafeKey(), conferencesToAttend.get(1).getWebsafeKey());
+    }
+
+    @Test(expected = UnauthorizedException.class)
+    public void testGetDashboardWithoutUser() throws Exception {
+        conferenceApi.getDashboard(null, null);
+    }
+
+    @Test
+    public void testGetDashboardWithoutProfile() throws Exception {
+        Dashboard dashboard = conferenceApi.getDashboard(user, null);
+        assertNull(dashboard.getProfile());
+        assertTrue(dashboard.getConferencesCreated().isEmpty());
+        assertNull(dashboard.getConferencesCreatedNextPageToken());
+        assertTrue(dashboard.getConferencesToAttend().isEmpty());
+    }
+
+    @Test
+    public void testGetDashboard() throws Exception {
+        conferenceApi.saveProfile(user, new ProfileForm(DISPLAY_NAME, TEE_SHIRT_SIZE));
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        List<String> topics = new ArrayList<>();
+        topics.add("Google");
+        Conference first = conferenceApi.createConference(user, new ConferenceForm(
+                "A " + NAME, DESCRIPTION, topics, CITY, startDate, endDate, CAP));
+        conferenceApi.createConference(user, new ConferenceForm(
+                "B " + NAME, DESCRIPTION, topics, CITY, startDate, endDate, CAP));
+        Conference third = conferenceApi.createConference(user, new ConferenceForm(
+                "C " + NAME, DESCRIPTION, topics, CITY, startDate, endDate, CAP));
+        conferenceApi.registerForConference(user, third.getWebsafeKey());
+        conferenceApi.registerForConference(user, first.getWebsafeKey());
+        ofy().clear();
+
+        Dashboard dashboard = conferenceApi.getDashboard(user, 2);
+        assertEquals(USER_ID, dashboard.getProfile().getUserId());
+        assertEquals(2, dashboard.getConferencesCreated().size());
+        assertEquals("A " + NAME, dashboard.getConferencesCreated().get(0).getName());
+        assertEquals("B " + NAME, dashboard.getConferencesCreated().get(1).getName());
+        assertNotNull(dashboard.getConferencesCreatedNextPageToken());
+        assertEquals(DISPLAY_NAME,
+                dashboard.getConferencesCreated().get(0).getOrganizerDisplayName());
+
+        // The next page continues from the dashboard's cursor.
+        CollectionResponse<Conference> nextPage = conferenceApi.getConferencesCreated(user,
+                dashboard.getConferencesCreatedNextPageToken(), 2);
+        assertEquals(1, nextPage.getItems().size());
+        assertEquals("C " + NAME, nextPage.getItems().iterator().next().getName());
+
+        // Registration order is preserved.
+        List<Conference> conferencesToAttend = dashboard.getConferencesToAttend();
+        assertEquals(2, conferencesToAttend.size());
+        assertEquals(third.getWebsafeKey(), conferencesToAttend.get(0).getWebsafeKey());
+        assertEquals(first.getWebsafeKey(), conferencesToAttend.get(1).getWebsafeKey());
+        assertEquals(DISPLAY_NAME, conferencesToAttend.get(0).getOrganizerDisplayName());
+    }
+
+    @Test
+    public void testRegistrationsSoldOut() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        int cap = 3;
+        Conference conference = conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, null, CITY, startDate, endDate, cap));
+        String websafeKey = conference.getWebsafeKey();
+        for (int i = 0; i < cap; i++) {
+            User attendee = new User("attendee" + i + "@gmail.com", "gmail.com", "attendee" + i);
+            conferenceApi.saveProfile(attendee, new ProfileForm(null, null));
+            assertTrue(conferenceApi.registerForConference(attendee, websafeKey).getResult());
+        }
+        assertEquals(0, conferenceApi.getConference(websafeKey).getSeatsAvailable());
+        // Never oversold.
+        conferenceApi.saveProfile(user, new ProfileForm(null, null));
+        try {
+            conferenceApi.registerForConference(user, websafeKey);
+            fail("registerForConference should fail when there are no seats left.");
+        } catch (ConflictException e) {
+            // expected
+        }
+        // A seat given back can be booked again.
+        User attendee = new User("attendee0@gmail.com", "gmail.com", "attendee0");
+        assertTrue(conferenceApi.unregisterFromConference(attendee, websafeKey).getResult());
+        assertEquals(1, conferenceApi.getConference(websafeKey).getSeatsAvailable());
+        assertTrue(conferenceApi.registerForConference(user, websafeKey).getResult());
+        assertEquals(0, conferenceApi.getConference(websafeKey).getSeatsAvailable());
+    }
+
+    @Test
+    public void testRegisterGroupForConference() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        Conference conference = conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, null, CITY, startDate, endDate, 5));
+        String websafeKey = conference.getWebsafeKey();
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            User attendee = new User("attendee" + i + "@gmail.com", "gmail.com", "attendee" + i);
+            conferenceApi.saveProfile(attendee, new ProfileForm(null, null));
+            userIds.add(attendee.getUserId());
+        }
+        conferenceApi.registerForConference(
+                new User("attendee0@gmail.com", "gmail.com", "attendee0"), websafeKey);
+        userIds.add("attendee1");
+        userIds.add("nobody");
+
+        GroupRegistration groupRegistration = conferenceApi.registerGroupForConference(user,
+                websafeKey, new GroupRegistrationForm(userIds));
+        assertEquals(4, groupRegistration.getRegistered());
+        Map<String, GroupRegistration.Status> statuses = getStatuses(groupRegistration);
+        assertEquals(7, statuses.size());
+        assertEquals(GroupRegistration.Status.ALREADY_REGISTERED, statuses.get("attendee0"));
+        for (int i = 1; i < 5; i++) {
+            assertEquals(GroupRegistration.Status.REGISTERED, statuses.get("attendee" + i));
+        }
+        assertEquals(GroupRegistration.Status.NO_SEATS_AVAILABLE, statuses.get("attendee5"));
+        assertEquals(GroupRegistration.Status.NO_PROFILE, statuses.get("nobody"));
+        assertEquals(0, conferenceApi.getConference(websafeKey).getSeatsAvailable());
+
+        // Registering the group again before the Profiles are updated books nothing.
+        groupRegistration = conferenceApi.registerGroupForConference(user, websafeKey,
+                new GroupRegistrationForm(userIds));
+        assertEquals(0, groupRegistration.getRegistered());
+        assertEquals(GroupRegistration.Status.ALREADY_REGISTERED,
+                getStatuses(groupRegistration).get("attendee1"));
+
+        GroupRegistrar.applyPendingBookings(conference.getKey());
+        ofy().clear();
+        for (int i = 1; i < 5; i++) {
+            Profile profile = ofy().load().key(Key.create(Profile.class, "attendee" + i)).now();
+            assertTrue(profile.isRegisteredFor(conference.getKey()));
+        }
+        groupRegistration = conferenceApi.registerGroupForConference(user, websafeKey,
+                new GroupRegistrationForm(userIds));
+        assertEquals(0, groupRegistration.getRegistered());
+        assertEquals(GroupRegistration.Status.ALREADY_REGISTERED,
+                getStatuses(groupRegistration).get("attendee1"));
+        assertEquals(0, conferenceApi.getConference(websafeKey).getSeatsAvailable());
+    }
+
+    @Test
+    public void testGroupBookingGivesBackSeats() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        Conference conference = conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, null, CITY, startDate, endDate, CAP));
+        String websafeKey = conference.getWebsafeKey();
+        User attendee = new User("attendee@gmail.com", "gmail.com", "attendee");
+        conferenceApi.saveProfile(attendee, new ProfileForm(null, null));
+        conferenceApi.registerGroupForConference(user, websafeKey,
+                new GroupRegistrationForm(Arrays.asList(attendee.getUserId())));
+        // Registers on their own before the group booking is applied.
+        conferenceApi.registerForConference(attendee, websafeKey);
+        assertEquals(CAP - 2, conferenceApi.getConference(websafeKey).getSeatsAvailable());
+
+        GroupRegistrar.applyPendingBookings(conference.getKey());
+        assertEquals(CAP - 1, conferenceApi.getConference(websafeKey).getSeatsAvailable());
+    }
+
+    @Test(expected = ForbiddenException.class)
+    public void testRegisterGroupForConferenceNotOrganizer() throws Exception {
+        Conference conference = conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, null, CITY, null, null, CAP));
+        User attendee = new User("attendee@gmail.com", "gmail.com", "attendee");
+        conferenceApi.registerGroupForConference(attendee, conference.getWebsafeKey(),
+                new GroupRegistrationForm(Arrays.asList(attendee.getUserId())));
+    }
+
+    @Test
+    public void testQueryConferencesPagination() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        for (int i = 0; i < 5; i++) {
+            conferenceApi.createConference(user, new ConferenceForm(
+                    NAME + " " + i, DESCRIPTION, null, CITY, startDate, endDate, CAP));
+        }
+        // The conferences created are paged. The ancestor query also makes the last
+        // conference visible to the global query below.
+        CollectionResponse<Conference> page = conferenceApi.getConferencesCreated(user, null, 3);
+        assertEquals(3, page.getItems().size());
+        page = conferenceApi.getConferencesCreated(user, page.getNextPageToken(), 3);
+        assertEquals(2, page.getItems().size());
+        assertNull(page.getNextPageToken());
+
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm();
+        conferenceQueryForm.setPageSize(2);
+        List<String> names = new ArrayList<>();
+        int pages = 0;
+        do {
+            page = conferenceApi.queryConference(conferenceQueryForm);
+            assertTrue(page.getItems().size() <= 2);
+            for (Conference conference : page.getItems()) {
+                names.add(conference.getName());
+            }
+            conferenceQueryForm.setCursor(page.getNextPageToken());
+            pages++;
+        } while (conferenceQueryForm.getCursor() != null);
+        assertEquals(3, pages);
+        assertEquals(5, names.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(NAME + " " + i, names.get(i));
+        }
+    }
+
+    @Test
+    public void testQueryConferencesRpcs() throws Exception {
+        List<Key<Conference>> conferenceKeys = createConferencesOfOrganizers(50, 5);
+        ofy().clear();
+
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm();
+        conferenceQueryForm.setPageSize(50);
+        rpcCounter.reset();
+        Collection<Conference> conferences =
+                conferenceApi.queryConference(conferenceQueryForm).getItems();
+        readOrganizerDisplayNames(conferences);
+        assertEquals(conferenceKeys.size(), conferences.size());
+        // The query, the Conferences and their organizers, whatever the number of results.
+        rpcCounter.assertDatastoreRpcsAtMost(3);
+
+        // From the query result cache.
+        ofy().clear();
+        rpcCounter.reset();
+        conferences = conferenceApi.queryConference(conferenceQueryForm).getItems();
+        readOrganizerDisplayNames(conferences);
+        assertEquals(conferenceKeys.size(), conferences.size());
+        rpcCounter.assertDatastoreRpcsAtMost(2);
+    }
+
+    @Test
+    public void testGetConferencesToAttendRpcs() throws Exception {
+        List<Key<Conference>> conferenceKeys = createConferencesOfOrganizers(20, 5);
+        Profile profile = conferenceApi.saveProfile(user, new ProfileForm(DISPLAY_NAME,
+                TEE_SHIRT_SIZE));
+        for (Key<Conference> conferenceKey : conferenceKeys) {
+            profile.addToConferencesToAttend(conferenceKey);
+        }
+        ofy().save().entity(profile).now();
+        ofy().clear();
+
+        rpcCounter.reset();
+        Collection<Conference> conferences = conferenceApi.getConferencesToAttend(user);
+        readOrganizerDisplayNames(conferences);
+        assertEquals(conferenceKeys.size(), conferences.size());
+        // The Profile, the Conferences and their organizers.
+        rpcCounter.assertDatastoreRpcsAtMost(3);
+
+        ofy().clear();
+        rpcCounter.reset();
+        Dashboard dashboard = conferenceApi.getDashboard(user, null);
+        readOrganizerDisplayNames(dashboard.getConferencesCreated());
+        readOrganizerDisplayNames(dashboard.getConferencesToAttend());
+        assertEquals(conferenceKeys.size(), dashboard.getConferencesToAttend().size());
+        // And the query for the conferences created.
+        rpcCounter.assertDatastoreRpcsAtMost(4);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testQueryConferencesInvalidCursor() throws Exception {
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm();
+        conferenceQueryForm.setCursor("not a cursor");
+        conferenceApi.queryConference(conferenceQueryForm);
+    }
+
+    @Test
+    public void testQueryConferencesMultipleInequalities() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        String[] startDates = {"03/25/2014", "05/25/2014", "07/25/2014", "01/25/2014"};
+        int[] caps = {500, 50, 500, 200};
+        for (int i = 0; i < startDates.length; i++) {
+            Date startDate = dateFormat.parse(startDates[i]);
+            conferenceApi.createConference(user, new ConferenceForm(
+                    NAME + " " + i, DESCRIPTION, null, CITY, startDate, startDate, caps[i]));
+        }
+        // Makes the last conference visible to the global query.
+        conferenceApi.getConferencesCreated(user, null, null);
+
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.MAX_ATTENDEES,
+                        ConferenceQueryForm.Operator.GT, "100"))
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.MONTH,
+                        ConferenceQueryForm.Operator.LT, "6"));
+        conferenceQueryForm.setPageSize(1);
+        List<String> names = new ArrayList<>();
+        do {
+            CollectionResponse<Conference> page = conferenceApi.queryConference(
+                    conferenceQueryForm);
+            for (Conference conference : page.getItems()) {
+                names.add(conference.getName());
+            }
+            conferenceQueryForm.setCursor(page.getNextPageToken());
+        } while (conferenceQueryForm.getCursor() != null);
+        assertEquals(2, names.size());
+        assertTrue(names.contains(NAME + " 0"));
+        assertTrue(names.contains(NAME + " 3"));
+    }
+
+    @Test
+    public void testQueryConferencesNotEqualPaging() throws Exception {
+        createConferencesWithCaps(10, 11, 12, 13, 14);
+
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.MAX_ATTENDEES,
+                        ConferenceQueryForm.Operator.NE, "12"));
+        conferenceQueryForm.setPageSize(2);
+        List<String> names = new ArrayList<>();
+        do {
+            CollectionResponse<Conference> page = conferenceApi.queryConference(
+                    conferenceQueryForm);
+            for (Conference conference : page.getItems()) {
+                names.add(conference.getName());
+            }
+            conferenceQueryForm.setCursor(page.getNextPageToken());
+        } while (conferenceQueryForm.getCursor() != null);
+        assertEquals(Arrays.asList(NAME + " 10", NAME + " 11", NAME + " 13", NAME + " 14"),
+                names);
+    }
+
+    @Test
+    public void testQueryConferenceSummaries() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        String[] startDates = {"03/25/2014", "05/25/2014", "07/25/2014", "01/25/2014"};
+        int[] caps = {500, 50, 500, 200};
+        for (int i = 0; i < startDates.length; i++) {
+            Date startDate = dateFormat.parse(startDates[i]);
+            conferenceApi.createConference(user, new ConferenceForm(
+                    NAME + " " + i, DESCRIPTION, Arrays.asList("Google", "Cloud"), CITY, startDate,
+                    startDate, caps[i]));
+        }
+        // Makes the last conference visible to the global query.
+        conferenceApi.getConferencesCreated(user, null, null);
+
+        // An equality filter, an inequality filter and a residual filter.
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.CITY,
+                        ConferenceQueryForm.Operator.EQ, CITY))
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.MAX_ATTENDEES,
+                        ConferenceQueryForm.Operator.GT, "100"))
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.MONTH,
+                        ConferenceQueryForm.Operator.LT, "6"));
+        conferenceQueryForm.setPageSize(1);
+        List<ConferenceSummary> summaries = new ArrayList<>();
+        do {
+            CollectionResponse<ConferenceSummary> page =
+                    conferenceApi.queryConferenceSummaries(conferenceQueryForm);
+            summaries.addAll(page.getItems());
+            conferenceQueryForm.setCursor(page.getNextPageToken());
+        } while (conferenceQueryForm.getCursor() != null);
+        assertEquals(2, summaries.size());
+        Map<String, ConferenceSummary> byName = new HashMap<>();
+        for (ConferenceSummary summary : summaries) {
+            byName.put(summary.getName(), summary);
+        }
+        ConferenceSummary summary = byName.get(NAME + " 3");
+        assertEquals(CITY, summary.getCity());
+        assertEquals(dateFormat.parse(startDates[3]), summary.getStartDate());
+        assertEquals(200, summary.getMaxAttendees());
+        assertEquals(200, summary.getSeatsAvailable());
+        assertEquals(NAME + " 3", conferenceApi.getConference(summary.getWebsafeKey()).getName());
+        assertTrue(byName.containsKey(NAME + " 0"));
+
+        conferenceQueryForm.setCursor(null);
+        ConferenceApi.WrappedCount count = conferenceApi.countConferences(conferenceQueryForm);
+        assertEquals(2, count.getCount());
+        assertTrue(count.getExact());
+        count = conferenceApi.countConferences(new ConferenceQueryForm());
+        assertEquals(4, count.getCount());
+        assertTrue(count.getExact());
+
+        // Topics filtered in memory can't be projected, whole conferences are loaded instead.
+        conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.TOPIC,
+                        ConferenceQueryForm.Operator.NE, "Nothing"))
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.MONTH,
+                        ConferenceQueryForm.Operator.LT, "4"));
+        summaries = new ArrayList<>(
+                conferenceApi.queryConferenceSummaries(conferenceQueryForm).getItems());
+        assertEquals(2, summaries.size());
+        assertEquals(2, conferenceApi.countConferences(conferenceQueryForm).getCount());
+    }
+
+    @Test
+    public void testQueryConferenceSummariesNotEqualPaging() throws Exception {
+        createConferencesWithCaps(10, 11, 12, 13, 14);
+
+        // Projected
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.MAX_ATTENDEES,
+                        ConferenceQueryForm.Operator.NE, "12"));
+        conferenceQueryForm.setPageSize(2);
+        assertEquals(Arrays.asList(NAME + " 10", NAME + " 11", NAME + " 13", NAME + " 14"),
+                readSummaryNames(conferenceQueryForm));
+
+        // Whole Conferences
+        conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.TOPIC,
+                        ConferenceQueryForm.Operator.NE, "Nothing"));
+        conferenceQueryForm.setPageSize(2);
+        assertEquals(5, readSummaryNames(conferenceQueryForm).size());
+    }
+
+    @Test
+    public void testQueryConferenceSummariesSkipsOrganizers() throws Exception {
+        // Saved without the organizer's display name, which queryConferences would look up
+        createConferencesOfOrganizers(10, 5);
+        ofy().clear();
+
+        ConferenceQueryForm conferenceQueryForm = new ConferenceQueryForm()
+                .filter(new ConferenceQueryForm.Filter(ConferenceQueryForm.Field.TOPIC,
+                        ConferenceQueryForm.Operator.NE, "Nothing"));
+        rpcCounter.reset();
+        assertEquals(10, conferenceApi.queryConferenceSummaries(conferenceQueryForm)
+                .getItems().size());
+        // The query and the Conferences, but none of the 5 organizers
+        rpcCounter.assertDatastoreRpcsAtMost(2);
+    }
+
+    @Test
+    public void testQueryConferencesCache() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        Conference first = conferenceApi.createConference(user, new ConferenceForm(
+                NAME + " 0", DESCRIPTION, null, CITY, startDate, endDate, CAP));
+        conferenceApi.getConferencesCreated(user, null, null);
+        assertEquals(1, conferenceApi.queryConference(new ConferenceQueryForm())
+                .getItems().size());
+
+        // Creating a conference invalidates the cached result.
+        conferenceApi.createConference(user, new ConferenceForm(
+                NAME + " 1", DESCRIPTION, null, CITY, startDate, endDate, CAP));
+        conferenceApi.getConferencesCreated(user, null, null);
+        assertEquals(2, conferenceApi.queryConference(new ConferenceQueryForm())
+                .getItems().size());
+
+        // The cached page holds keys, a conference deleted behind its back is skipped.
+        ofy().delete().key(first.getKey()).now();
+        List<Conference> conferences = new ArrayList<>(
+                conferenceApi.queryConference(new ConferenceQueryForm()).getItems());
+        assertEquals(1, conferences.size());
+        assertEquals(NAME + " 1", conferences.get(0).getName());
+    }
+
+    @Test
+    public void testSearchConferences() throws Exception {
+        Conference kubernetes = conferenceApi.createConference(user, new ConferenceForm(
+                "Kubernetes Live", "Containers at scale", null, CITY, null, null, CAP));
+        Conference cloud = conferenceApi.createConference(user, new ConferenceForm(
+                NAME, "Talks about Kubernetes", null, CITY, null, null, CAP));
+        conferenceApi.createConference(user, new ConferenceForm(
+                "Android Dev", DESCRIPTION, null, CITY, null, null, CAP));
+        // Applies the writes, so that the postings are visible to the search
+        conferenceApi.getConferencesCreated(user, null, null);
+
+        List<Conference> conferences = new ArrayList<>(
+                conferenceApi.searchConferences("kubernetes", null, null).getItems());
+        assertEquals(2, conferences.size());
+        // A match in the name ranks higher
+        assertEquals(kubernetes.getWebsafeKey(), conferences.get(0).getWebsafeKey());
+        assertEquals(cloud.getWebsafeKey(), conferences.get(1).getWebsafeKey());
+
+        CollectionResponse<Conference> page =
+                conferenceApi.searchConferences("kubernetes", null, 1);
+        assertEquals(1, page.getItems().size());
+        page = conferenceApi.searchConferences("kubernetes", page.getNextPageToken(), 1);
+        assertEquals(cloud.getWebsafeKey(), page.getItems().iterator().next().getWebsafeKey());
+        assertNull(page.getNextPageToken());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSearchConferencesInvalidCursor() throws Exception {
+        conferenceApi.searchConferences("kubernetes", "-1", null);
+    }
+
+    @Test
+    public void testAutocomplete() throws Exception {
+        conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, Arrays.asList("Cloud", "Google"), CITY, null, null, CAP));
+        conferenceApi.createConference(user, new ConferenceForm(
+                NAME + " 2", DESCRIPTION, Arrays.asList("Cloud"), "Santiago", null, null, CAP));
+        conferenceApi.createConference(user, new ConferenceForm(
+                NAME + " 3", DESCRIPTION, Arrays.asList("Android"), "Santiago", null, null,
+                CAP));
+        Autocomplete.refresh();
+
+        rpcCounter.reset();
+        assertEquals(Arrays.asList("Santiago", CITY),
+                conferenceApi.autocomplete("CITY", "san", null).getSuggestions());
+        assertEquals(Arrays.asList("Santiago"),
+                conferenceApi.autocomplete("CITY", "san", 1).getSuggestions());
+        assertEquals(Arrays.asList("Cloud"),
+                conferenceApi.autocomplete("TOPIC", "c", null).getSuggestions());
+        // Answered from memory
+        assertEquals(Collections.emptyList(), rpcCounter.getRpcs());
+
+        // A new Conference is suggested right away
+        conferenceApi.createConference(user, new ConferenceForm(
+                NAME + " 4", DESCRIPTION, Arrays.asList("Containers"), "Salzburg", null, null,
+                CAP));
+        assertEquals(Arrays.asList("Cloud", "Containers"),
+                conferenceApi.autocomplete("TOPIC", "C", null).getSuggestions());
+
+        // A refresh doesn't lose it to facets cached in memcache before it was created
+        conferenceApi.getFacets();
+        conferenceApi.createConference(user, new ConferenceForm(
+                NAME + " 5", DESCRIPTION, Arrays.asList("Cloud"), "Sapporo", null, null, CAP));
+        Autocomplete.refresh();
+        assertTrue(conferenceApi.autocomplete("CITY", "sa", null).getSuggestions()
+                .contains("Sapporo"));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testAutocompleteUnknownField() throws Exception {
+        conferenceApi.autocomplete("NAME", "g", null);
+    }
+
+    @Test
+    public void testGetFacets() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, Arrays.asList("Google", "Cloud"), CITY, startDate, endDate,
+                CAP));
+        conferenceApi.createConference(user, new ConferenceForm(
+                NAME + " 2", DESCRIPTION, Arrays.asList("Google"), "London", null, null, 100));
+
+        Facets facets = conferenceApi.getFacets();
+        assertEquals(2, facets.getCities().size());
+        assertEquals(2, facets.getTopics().size());
+        FacetCount google = facets.getTopics().get(0);
+        assertEquals("Google", google.getValue());
+        assertEquals(2, google.getConferences());
+        assertEquals(CAP + 100, google.getSeats());
+        assertEquals(1, facets.getMonths().size());
+        assertEquals(String.valueOf(MONTH), facets.getMonths().get(0).getValue());
+        assertEquals(CAP, facets.getMonths().get(0).getSeats());
+    }
+
+    @Test
+    public void testGetAnnouncement() throws Exception {
+        assertNull(conferenceApi.getAnnouncement());
+        String message = "Last chance to attend! The following conferences are nearly sold out: "
+                + NAME;
+        AnnouncementCache.publish(message);
+        assertEquals(message, conferenceApi.getAnnouncement().getMessage());
+        AnnouncementCache.publish(null);
+        assertNull(conferenceApi.getAnnouncement());
+    }
+
+    @Test
+    public void testNearlySoldOutAnnouncement() throws Exception {
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        Date startDate = dateFormat.parse("03/25/2014");
+        Date endDate = dateFormat.parse("03/26/2014");
+        int cap = 7;
+        Conference conference = conferenceApi.createConference(user, new ConferenceForm(
+                NAME, DESCRIPTION, null, CITY, startDate, endDate, cap));
+        String websafeKey = conference.getWebsafeKey();
+        AnnouncementCache.publish(null);
+        List<User> attendees = new ArrayList<>();
+        for (int i = 0; i < cap; i++) {
+            User attendee = new User("attendee" + i + "@gmail.com", "gmail.com", "attendee" + i);
+            conferenceApi.saveProfile(attendee, new ProfileForm(null, null));
+            conferenceApi.registerForConference(attendee, websafeKey);
+            attendees.add(attendee);
+            int seatsAvailable = cap - i - 1;
+            if (seatsAvailable >= 1 && seatsAvailable <= 5) {
+                assertTrue(conferenceApi.getAnnouncement().getMessage().endsWith(NAME));
+            } else {
+                assertNull(conferenceApi.getAnnouncement());
+            }
+        }
+        // Back in the band after giving a seat back.
+        conferenceApi.unregisterFromConference(attendees.get(0), websafeKey);
+        assertTrue(conferenceApi.getAnnouncement().getMessage().endsWith(NAME));
+        conferenceApi.registerForConference(attendees.get(0), websafeKey);
+        assertNull(conferenceApi.getAnnouncement());
+    }
+
+    /**
+     * Saves Conferences spread over the given number of organizers, and waits until global
+     * queries see them.
+     */
+    /**
+     * Reads all the pages of conference summaries, and returns their names in order.
+     */
+    private List<String> readSummaryNames(ConferenceQueryForm conferenceQueryForm)
+            throws Exception {
+        List<String> names = new ArrayList<>();
+        do {
+            CollectionResponse<ConferenceSummary> page =
+                    conferenceApi.queryConferenceSummaries(conferenceQueryForm);
+            for (ConferenceSummary summary : page.getItems()) {
+                names.add(summary.getName());
+            }
+            conferenceQueryForm.setCursor(page.getNextPageToken());
+        } while (conferenceQueryForm.getCursor() != null);
+        return names;
+    }
+
+    /**
+     * Creates a Conference per capacity, named after it, and makes them visible to global
+     * queries.
+     */
+    private void createConferencesWithCaps(int... caps) throws Exception {
+        for (int cap : caps) {
+            conferenceApi.createConference(user, new ConferenceForm(
+                    NAME + " " + cap, DESCRIPTION, null, CITY, null, null, cap));
+        }
+        conferenceApi.getConferencesCreated(user, null, null);
+    }
+
+    private List<Key<Conference>> createConferencesOfOrganizers(int count, int organizers)
+            throws Exception {
+        List<Conference> conferences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User organizer = new User("organizer" + i % organizers + "@gmail.com", "gmail.com",
+                    "organizer" + i % organizers);
+            if (i < organizers) {
+                conferenceApi.saveProfile(organizer, new ProfileForm(
+                        "Organizer " + i, TEE_SHIRT_SIZE));
+            }
+            conferences.add(new Conference(i + 1, organizer.getUserId(), new ConferenceForm(
+                    String.format("%s %02d", NAME, i), DESCRIPTION, null, CITY, null, null, CAP)));
+        }
+        List<Key<Conference>> conferenceKeys = new ArrayList<>(
+                ofy().save().entities(conferences).now().keySet());
+        for (int i = 0; i < organizers; i++) {
+            // Ancestor queries apply the pending writes of their entity group.
+            conferenceApi.getConferencesCreated(new User("organizer" + i + "@gmail.com",
+                    "gmail.com", "organizer" + i), null, null);
+        }
+        return conferenceKeys;
+    }
+
+    /**
+     * Reads the organizers' names the way the API response serialization does.
+     */
+    private static void readOrganizerDisplayNames(Collection<Conference> conferences) {
+        for (Conference conference : conferences) {
+            assertNotNull(conference.getOrganizerDisplayName());
+        }
+    }
+
+    private static Map<String, GroupRegistration.Status> getStatuses(
+            GroupRegistration groupRegistration) {
+        Map<String, GroupRegistration.Status> statuses = new HashMap<>();
+        for (GroupRegistration.Outcome outcome : groupRegistration.getOutcomes()) {
+            statuses.put(outcome.getUserId(), outcome.getStatus());
+        }
+        return statuses;
+    }
 }